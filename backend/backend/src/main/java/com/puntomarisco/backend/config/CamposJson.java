@@ -0,0 +1,159 @@
+package com.puntomarisco.backend.config;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.AnnotatedClass;
+import com.fasterxml.jackson.databind.introspect.NopAnnotationIntrospector;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+
+/**
+ * Selección de campos de las respuestas JSON (?fields=id,mesa,estado,detalles(plato,cantidad)).
+ * Las clases de la aplicación se serializan con el filtro "campos": por defecto deja pasar todo y,
+ * si la petición trae fields, solo escribe los campos pedidos en cada nivel. Un campo con
+ * paréntesis se limita a los subcampos indicados; sin paréntesis va completo.
+ * Como los campos no pedidos ni se leen, las colecciones perezosas que no se piden no se cargan.
+ */
+public final class CamposJson {
+
+    public static final String FILTRO = "campos";
+
+    private static final String PAQUETE = "com.puntomarisco.backend.";
+
+    private CamposJson() {
+    }
+
+    /**
+     * Campos pedidos en cada nivel: el valor es null cuando el campo va completo
+     * @throws IllegalArgumentException Si la expresión está mal formada
+     */
+    public static Map<String, Object> parsear(String expresion) {
+        int[] posicion = {0};
+        Map<String, Object> campos = parsearNivel(expresion, posicion);
+        if (posicion[0] != expresion.length()) {
+            throw new IllegalArgumentException("fields mal formado cerca de la posición " + posicion[0]);
+        }
+        return campos;
+    }
+
+    /**
+     * ¿Pide la expresión el campo de primer nivel indicado?
+     */
+    public static boolean incluye(String expresion, String campo) {
+        return parsear(expresion).containsKey(campo);
+    }
+
+    /**
+     * Filtros para MappingJacksonValue con la selección de la petición
+     */
+    public static SimpleFilterProvider filtros(String expresion) {
+        return new SimpleFilterProvider().addFilter(FILTRO, new Filtro(parsear(expresion)));
+    }
+
+    /**
+     * Filtros por defecto del ObjectMapper: todos los campos
+     */
+    public static SimpleFilterProvider filtrosPorDefecto() {
+        return new SimpleFilterProvider().addFilter(FILTRO, SimpleBeanPropertyFilter.serializeAll());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> parsearNivel(String expresion, int[] posicion) {
+        Map<String, Object> campos = new LinkedHashMap<>();
+        while (posicion[0] < expresion.length()) {
+            int inicio = posicion[0];
+            while (posicion[0] < expresion.length() && ",()".indexOf(expresion.charAt(posicion[0])) < 0) {
+                posicion[0]++;
+            }
+            String nombre = expresion.substring(inicio, posicion[0]).trim();
+            if (nombre.isEmpty()) {
+                throw new IllegalArgumentException("fields con un campo vacío en la posición " + inicio);
+            }
+            Object subcampos = null;
+            if (posicion[0] < expresion.length() && expresion.charAt(posicion[0]) == '(') {
+                posicion[0]++;
+                subcampos = parsearNivel(expresion, posicion);
+                if (posicion[0] >= expresion.length() || expresion.charAt(posicion[0]) != ')') {
+                    throw new IllegalArgumentException("fields sin cerrar el paréntesis de " + nombre);
+                }
+                posicion[0]++;
+            }
+            // Un campo repetido se une; si alguna vez se pide completo, va completo
+            Object anterior = campos.get(nombre);
+            if (!campos.containsKey(nombre) || subcampos == null) {
+                campos.put(nombre, subcampos);
+            } else if (anterior != null) {
+                ((Map<String, Object>) anterior).putAll((Map<String, Object>) subcampos);
+            }
+            if (posicion[0] < expresion.length() && expresion.charAt(posicion[0]) == ',') {
+                posicion[0]++;
+            } else {
+                break;
+            }
+        }
+        return campos;
+    }
+
+    /**
+     * Filtro que mira la ruta del objeto que se está escribiendo (nombres de los campos que lo
+     * contienen, saltando las listas) para decidir qué campos deja pasar
+     */
+    static final class Filtro extends SimpleBeanPropertyFilter {
+        private final Map<String, Object> campos;
+
+        Filtro(Map<String, Object> campos) {
+            this.campos = campos;
+        }
+
+        @Override
+        public void serializeAsField(Object pojo, JsonGenerator gen, SerializerProvider provider, PropertyWriter writer)
+                throws Exception {
+            if (incluido(gen.getOutputContext(), writer.getName())) {
+                writer.serializeAsField(pojo, gen, provider);
+            } else if (!gen.canOmitFields()) {
+                writer.serializeAsOmittedField(pojo, gen, provider);
+            }
+        }
+
+        private boolean incluido(JsonStreamContext contexto, String campo) {
+            Map<String, Object> nivel = nivel(contexto.getParent());
+            return nivel == null || nivel.containsKey(campo);
+        }
+
+        // Selección que aplica dentro del contexto; null si el objeto va completo
+        @SuppressWarnings("unchecked")
+        private Map<String, Object> nivel(JsonStreamContext contexto) {
+            if (contexto == null || contexto.inRoot()) {
+                return campos;
+            }
+            Map<String, Object> superior = nivel(contexto.getParent());
+            if (superior == null || !contexto.inObject()) {
+                return superior;
+            }
+            if (!superior.containsKey(contexto.getCurrentName())) {
+                return Collections.emptyMap();
+            }
+            return (Map<String, Object>) superior.get(contexto.getCurrentName());
+        }
+    }
+
+    /**
+     * Asigna el filtro "campos" a las clases de la aplicación (entidades y DTOs)
+     */
+    static final class Introspector extends NopAnnotationIntrospector {
+        @Override
+        public Object findFilterId(Annotated a) {
+            if (a instanceof AnnotatedClass clase && clase.getRawType().getName().startsWith(PAQUETE)) {
+                return FILTRO;
+            }
+            return null;
+        }
+    }
+}
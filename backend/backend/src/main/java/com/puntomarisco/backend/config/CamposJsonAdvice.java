@@ -0,0 +1,46 @@
+package com.puntomarisco.backend.config;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.AbstractMappingJacksonResponseBodyAdvice;
+
+import com.puntomarisco.backend.controller.DashboardController;
+import com.puntomarisco.backend.controller.EstadoCajaController;
+import com.puntomarisco.backend.controller.MesaController;
+import com.puntomarisco.backend.controller.PedidoController;
+import com.puntomarisco.backend.controller.PlatoController;
+
+/**
+ * Aplica ?fields= a las respuestas JSON de los controladores de pedidos, mesas, caja, platos y tablero
+ */
+@RestControllerAdvice(assignableTypes = {PedidoController.class, MesaController.class, EstadoCajaController.class,
+        PlatoController.class, DashboardController.class})
+public class CamposJsonAdvice extends AbstractMappingJacksonResponseBodyAdvice {
+
+    public static final String PARAMETRO = "fields";
+
+    @Override
+    protected void beforeBodyWriteInternal(MappingJacksonValue bodyContainer, MediaType contentType,
+                                           MethodParameter returnType, ServerHttpRequest request,
+                                           ServerHttpResponse response) {
+        if (!(request instanceof ServletServerHttpRequest servlet)) {
+            return;
+        }
+        String campos = servlet.getServletRequest().getParameter(PARAMETRO);
+        if (campos == null || campos.isBlank()) {
+            return;
+        }
+        try {
+            bodyContainer.setFilters(CamposJson.filtros(campos));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
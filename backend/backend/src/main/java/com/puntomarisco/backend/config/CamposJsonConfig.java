@@ -0,0 +1,23 @@
+package com.puntomarisco.backend.config;
+
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fasterxml.jackson.databind.introspect.AnnotationIntrospectorPair;
+
+/**
+ * Prepara el ObjectMapper de la aplicación para ?fields= (ver CamposJson): filtro "campos" en las
+ * clases propias, que sin selección deja pasar todos los campos
+ */
+@Configuration
+public class CamposJsonConfig {
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer camposJson() {
+        return builder -> builder
+                .filters(CamposJson.filtrosPorDefecto())
+                .postConfigurer(mapper -> mapper.setAnnotationIntrospector(new AnnotationIntrospectorPair(
+                        new CamposJson.Introspector(), mapper.getSerializationConfig().getAnnotationIntrospector())));
+    }
+}
@@ -0,0 +1,88 @@
+package com.puntomarisco.backend.config;
+
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+/**
+ * Formatos de respuesta además de JSON: CBOR (application/cbor) y Smile
+ * (application/x-jackson-smile), según la cabecera Accept. Los convertidores salen del mismo
+ * Jackson2ObjectMapperBuilder que el JSON, así comparten módulos, fechas y ?fields=.
+ * Blackbird sustituye la reflexión por lambdas generadas al leer y escribir propiedades.
+ */
+@Configuration
+public class FormatosBinariosConfig {
+
+    public static final MediaType CBOR = MediaType.APPLICATION_CBOR;
+    public static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+
+    // Como bean de tipo Module lo instala Spring Boot en el ObjectMapper junto a los demás módulos
+    @Bean
+    public BlackbirdModule blackbird() {
+        return new BlackbirdModule();
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter conversorCbor(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter conversorSmile(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    /**
+     * ¿Prefiere el cliente CBOR o Smile antes que JSON? Para los endpoints que devuelven JSON ya
+     * serializado y tienen que servir los formatos binarios aparte.
+     */
+    public static boolean pideBinario(String accept) {
+        return tipoBinario(accept) != null;
+    }
+
+    /**
+     * @return CBOR o SMILE si el cliente lo prefiere a JSON; null en otro caso
+     */
+    public static MediaType tipoBinario(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return null;
+        }
+        try {
+            List<MediaType> tipos = MediaType.parseMediaTypes(accept);
+            tipos.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+            for (MediaType tipo : tipos) {
+                if (tipo.includes(MediaType.APPLICATION_JSON)) {
+                    return null;
+                }
+                if (tipo.isCompatibleWith(CBOR)) {
+                    return CBOR;
+                }
+                if (tipo.isCompatibleWith(SMILE)) {
+                    return SMILE;
+                }
+            }
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+        return null;
+    }
+
+    /**
+     * Fábrica de Jackson para el tipo binario (nueva en cada llamada)
+     */
+    public static JsonFactory fabrica(MediaType tipo) {
+        return SMILE.equals(tipo) ? new SmileFactory() : new CBORFactory();
+    }
+}
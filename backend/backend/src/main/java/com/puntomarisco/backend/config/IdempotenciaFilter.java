@@ -0,0 +1,209 @@
+package com.puntomarisco.backend.config;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.puntomarisco.backend.service.IdempotenciaService;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Peticiones que modifican datos con cabecera Idempotency-Key (alta de pedidos, facturación...):
+ * la primera se ejecuta y, si termina bien, su respuesta se guarda; los reintentos con la misma
+ * clave reciben esa respuesta sin llegar al controlador, y los que llegan mientras la primera está
+ * en curso la esperan. La misma clave con otro cuerpo se rechaza con 422, y un cuerpo mayor que
+ * el máximo configurado con 413 antes de leerlo entero.
+ */
+public class IdempotenciaFilter extends OncePerRequestFilter {
+
+    public static final String CABECERA = "Idempotency-Key";
+    public static final String CABECERA_REPETIDA = "Idempotent-Replayed";
+
+    private static final int LONGITUD_MAXIMA_CLAVE = 255;
+    private static final Set<String> METODOS = Set.of("POST", "PUT", "PATCH", "DELETE");
+
+    private final IdempotenciaService idempotenciaService;
+    private final int maxCuerpoBytes;
+
+    public IdempotenciaFilter(IdempotenciaService idempotenciaService, int maxCuerpoBytes) {
+        this.idempotenciaService = idempotenciaService;
+        this.maxCuerpoBytes = maxCuerpoBytes;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getHeader(CABECERA) == null || !METODOS.contains(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String claveCliente = request.getHeader(CABECERA).trim();
+        if (claveCliente.isEmpty() || claveCliente.length() > LONGITUD_MAXIMA_CLAVE) {
+            error(response, HttpStatus.BAD_REQUEST, "Idempotency-Key vacía o demasiado larga");
+            return;
+        }
+        // El cuerpo se guarda en memoria para la huella: primero el tamaño declarado y, como puede
+        // faltar (chunked), la lectura se corta un byte después del máximo
+        if (request.getContentLengthLong() > maxCuerpoBytes) {
+            error(response, HttpStatus.PAYLOAD_TOO_LARGE, "Cuerpo demasiado grande");
+            return;
+        }
+        byte[] cuerpo = request.getInputStream().readNBytes(maxCuerpoBytes + 1);
+        if (cuerpo.length > maxCuerpoBytes) {
+            error(response, HttpStatus.PAYLOAD_TOO_LARGE, "Cuerpo demasiado grande");
+            return;
+        }
+        // La clave vale para una operación concreta (método, ruta y usuario)
+        String alcance = request.getMethod() + " " + request.getRequestURI() + "?" + request.getQueryString()
+                + " " + usuario() + " ";
+        String clave = IdempotenciaService.huella(alcance, claveCliente.getBytes(StandardCharsets.UTF_8));
+        String huella = IdempotenciaService.huella("", cuerpo);
+
+        while (true) {
+            IdempotenciaService.Reserva reserva = idempotenciaService.reservar(clave);
+            if (reserva.isPropia()) {
+                ejecutar(new CuerpoLeido(request, cuerpo), response, filterChain, clave, huella);
+                return;
+            }
+            IdempotenciaService.Respuesta guardada;
+            try {
+                guardada = idempotenciaService.esperar(reserva);
+            } catch (TimeoutException e) {
+                error(response, HttpStatus.CONFLICT, "Hay una solicitud con la misma Idempotency-Key en curso");
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error(response, HttpStatus.SERVICE_UNAVAILABLE, "Solicitud interrumpida");
+                return;
+            }
+            if (guardada == null) {
+                // La primera falló sin guardar respuesta: esta pasa a intentarlo
+                continue;
+            }
+            if (!guardada.huella().equals(huella)) {
+                error(response, HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency-Key reutilizada con otra solicitud");
+                return;
+            }
+            response.setStatus(guardada.estado());
+            if (guardada.tipoContenido() != null) {
+                response.setContentType(guardada.tipoContenido());
+            }
+            response.setHeader(CABECERA_REPETIDA, "true");
+            response.setContentLength(guardada.cuerpo().length);
+            response.getOutputStream().write(guardada.cuerpo());
+            return;
+        }
+    }
+
+    // Solo se guardan respuestas 2xx; un error deja que el cliente reintente de verdad
+    private void ejecutar(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain,
+                          String clave, String huella) throws ServletException, IOException {
+        ContentCachingResponseWrapper envoltura = new ContentCachingResponseWrapper(response);
+        boolean guardada = false;
+        try {
+            filterChain.doFilter(request, envoltura);
+            int estado = envoltura.getStatus();
+            if (estado >= 200 && estado < 300) {
+                idempotenciaService.completar(clave, new IdempotenciaService.Respuesta(
+                        estado, envoltura.getContentType(), envoltura.getContentAsByteArray(), huella));
+                guardada = true;
+            }
+        } finally {
+            if (!guardada) {
+                idempotenciaService.abandonar(clave);
+            }
+            envoltura.copyBodyToResponse();
+        }
+    }
+
+    private static String usuario() {
+        Authentication autenticacion = SecurityContextHolder.getContext().getAuthentication();
+        if (autenticacion == null || autenticacion instanceof AnonymousAuthenticationToken) {
+            return "-";
+        }
+        return autenticacion.getName();
+    }
+
+    private static void error(HttpServletResponse response, HttpStatus estado, String mensaje) throws IOException {
+        response.setStatus(estado.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write("{\"error\":\"" + mensaje + "\"}");
+    }
+
+    // La petición con el cuerpo ya leído (hace falta para la huella), para que el controlador lo vuelva a leer
+    private static final class CuerpoLeido extends HttpServletRequestWrapper {
+        private final byte[] cuerpo;
+
+        CuerpoLeido(HttpServletRequest request, byte[] cuerpo) {
+            super(request);
+            this.cuerpo = cuerpo;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream datos = new ByteArrayInputStream(cuerpo);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return datos.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return datos.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return datos.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public int getContentLength() {
+            return cuerpo.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return cuerpo.length;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.puntomarisco.backend.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.puntomarisco.backend.service.ArchivoPedidosService;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Pasa los importes guardados como DOUBLE (total, precio, total_ventas) a sus columnas en
+ * céntimos. Cada fila migrada deja la columna antigua a NULL, así la migración es idempotente
+ * y puede repetirse en cada arranque; recorre las tablas por lotes para no bloquearlas.
+ */
+@Component
+public class MigracionCentimos implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MigracionCentimos.class);
+
+    // {tabla, columna DOUBLE antigua, columna en céntimos}
+    private static final String[][] COLUMNAS = {
+        { ArchivoPedidosService.TABLA_PEDIDO, "total", "total_centimos" },
+        { ArchivoPedidosService.TABLA_DETALLE, "precio", "precio_centimos" },
+        { ArchivoPedidosService.TABLA_PEDIDO_ARCHIVO, "total", "total_centimos" },
+        { ArchivoPedidosService.TABLA_DETALLE_ARCHIVO, "precio", "precio_centimos" },
+        { "plato", "precio", "precio_centimos" },
+        { "estado_caja", "total_ventas", "total_ventas_centimos" }
+    };
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Value("${dinero.migracion.lote:5000}")
+    private int tamanoLote;
+
+    @Override
+    public void run(String... args) {
+        long migradas = 0;
+        for (String[] columna : COLUMNAS) {
+            try {
+                migradas += migrar(columna[0], columna[1], columna[2]);
+            } catch (Exception e) {
+                logger.error("Error al migrar {}.{} a céntimos: {}", columna[0], columna[1], e.getMessage(), e);
+            }
+        }
+        if (migradas > 0) {
+            // Los UPDATE por JDBC no pasan por la caché de segundo nivel (platos)
+            entityManagerFactory.getCache().evictAll();
+        }
+    }
+
+    private long migrar(String tabla, String antigua, String centimos) {
+        if (!existeColumna(tabla, antigua)) {
+            return 0;
+        }
+        // Las tablas de archivo solo ganan columnas al archivar; los reportes ya leen la nueva
+        if (!existeColumna(tabla, centimos)) {
+            jdbcTemplate.execute("ALTER TABLE " + tabla + " ADD COLUMN " + centimos + " BIGINT NOT NULL DEFAULT 0");
+        }
+        String sql = "UPDATE " + tabla + " SET " + centimos + " = ROUND(" + antigua + " * 100), " + antigua
+                + " = NULL WHERE " + antigua + " IS NOT NULL LIMIT " + tamanoLote;
+        long total = 0;
+        int filas;
+        do {
+            filas = jdbcTemplate.update(sql);
+            total += filas;
+        } while (filas == tamanoLote);
+        if (total > 0) {
+            logger.info("Migración a céntimos: {} filas de {}.{}", total, tabla, antigua);
+        }
+        return total;
+    }
+
+    private boolean existeColumna(String tabla, String columna) {
+        Integer cantidad = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() " +
+                "AND TABLE_NAME = ? AND COLUMN_NAME = ?", Integer.class, tabla, columna);
+        return cantidad != null && cantidad > 0;
+    }
+}
@@ -0,0 +1,88 @@
+package com.puntomarisco.backend.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.puntomarisco.backend.service.ArchivoPedidosService;
+
+/**
+ * Completa pedido.mesa_id y detalle_pedido.plato_id en las filas anteriores a esas columnas
+ * (emparejando por nombre) y crea sus claves foráneas. Es idempotente: en los arranques
+ * siguientes solo toca filas que sigan sin ID.
+ */
+@Component
+public class MigracionReferencias implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MigracionReferencias.class);
+
+    // Con nombres repetidos se toma la fila más antigua, igual que CatalogoCache
+    private static final String SQL_MESA_ID = "UPDATE %s p JOIN (SELECT nombre, MIN(id) AS id FROM mesa GROUP BY nombre) m "
+            + "ON m.nombre = p.mesa SET p.mesa_id = m.id WHERE p.mesa_id IS NULL";
+    private static final String SQL_PLATO_ID = "UPDATE %s d JOIN (SELECT nombre, MIN(id) AS id FROM plato GROUP BY nombre) c "
+            + "ON c.nombre = d.plato SET d.plato_id = c.id WHERE d.plato_id IS NULL";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${catalogo.migracion.habilitada:true}")
+    private boolean habilitada;
+
+    @Override
+    public void run(String... args) {
+        if (!habilitada) {
+            return;
+        }
+        try {
+            rellenar(SQL_MESA_ID, ArchivoPedidosService.TABLA_PEDIDO);
+            rellenar(SQL_PLATO_ID, ArchivoPedidosService.TABLA_DETALLE);
+            // El archivo no lleva claves foráneas, pero sí los IDs para los reportes históricos
+            if (existeColumna(ArchivoPedidosService.TABLA_PEDIDO_ARCHIVO, "mesa_id")) {
+                rellenar(SQL_MESA_ID, ArchivoPedidosService.TABLA_PEDIDO_ARCHIVO);
+            }
+            if (existeColumna(ArchivoPedidosService.TABLA_DETALLE_ARCHIVO, "plato_id")) {
+                rellenar(SQL_PLATO_ID, ArchivoPedidosService.TABLA_DETALLE_ARCHIVO);
+            }
+
+            // Al borrar una mesa o un plato los pedidos conservan el nombre y pierden solo la referencia
+            crearClaveForanea(ArchivoPedidosService.TABLA_PEDIDO, "fk_pedido_mesa", "mesa_id", "mesa");
+            crearClaveForanea(ArchivoPedidosService.TABLA_DETALLE, "fk_detalle_pedido_plato", "plato_id", "plato");
+        } catch (Exception e) {
+            logger.error("Error en la migración de referencias a mesa y plato: {}", e.getMessage(), e);
+        }
+    }
+
+    private void rellenar(String sql, String tabla) {
+        int filas = jdbcTemplate.update(String.format(sql, tabla));
+        if (filas > 0) {
+            logger.info("Migración de referencias: {} filas de {} enlazadas", filas, tabla);
+        }
+    }
+
+    private void crearClaveForanea(String tabla, String nombre, String columna, String referencia) {
+        Integer existentes = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.TABLE_CONSTRAINTS WHERE TABLE_SCHEMA = DATABASE() " +
+                "AND TABLE_NAME = ? AND CONSTRAINT_NAME = ? AND CONSTRAINT_TYPE = 'FOREIGN KEY'",
+                Integer.class, tabla, nombre);
+        if (existentes != null && existentes > 0) {
+            return;
+        }
+        // IDs que apunten a filas ya borradas impedirían crear la restricción
+        jdbcTemplate.update("UPDATE " + tabla + " t LEFT JOIN " + referencia + " r ON r.id = t." + columna
+                + " SET t." + columna + " = NULL WHERE t." + columna + " IS NOT NULL AND r.id IS NULL");
+        jdbcTemplate.execute("ALTER TABLE " + tabla + " ADD CONSTRAINT " + nombre + " FOREIGN KEY (" + columna
+                + ") REFERENCES " + referencia + " (id) ON DELETE SET NULL");
+        logger.info("Clave foránea {} creada en {}", nombre, tabla);
+    }
+
+    private boolean existeColumna(String tabla, String columna) {
+        Integer cantidad = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() " +
+                "AND TABLE_NAME = ? AND COLUMN_NAME = ?", Integer.class, tabla, columna);
+        return cantidad != null && cantidad > 0;
+    }
+}
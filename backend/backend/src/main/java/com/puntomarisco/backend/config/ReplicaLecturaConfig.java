@@ -0,0 +1,61 @@
+package com.puntomarisco.backend.config;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Envía las transacciones de solo lectura (@Transactional(readOnly = true)) a una réplica de MySQL.
+ * Solo se activa si replica.datasource.jdbc-url está configurada; sin ella se usa el DataSource
+ * único de Spring Boot. Las lecturas fuera de transacción y todas las escrituras van a la primaria.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "replica.datasource", name = "jdbc-url")
+public class ReplicaLecturaConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaLecturaConfig.class);
+
+    @Bean(destroyMethod = "close")
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primariaDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    // Mismo driver que la primaria; usuario, contraseña y pool propios
+    @Bean(destroyMethod = "close")
+    @ConfigurationProperties("replica.datasource")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties) {
+        HikariDataSource replica = new HikariDataSource();
+        replica.setDriverClassName(properties.determineDriverClassName());
+        replica.setPoolName("replica");
+        replica.setReadOnly(true);
+        return replica;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primariaDataSource, HikariDataSource replicaDataSource) {
+        logger.info("Transacciones de solo lectura enrutadas a la réplica {}", replicaDataSource.getJdbcUrl());
+        return enrutarLecturas(primariaDataSource, replicaDataSource);
+    }
+
+    /**
+     * La conexión física se pide en la primera sentencia, cuando la transacción ya marcó la
+     * conexión como de solo lectura; en ese caso se toma de la réplica.
+     */
+    public static DataSource enrutarLecturas(DataSource primaria, DataSource replica) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(primaria);
+        proxy.setReadOnlyDataSource(replica);
+        return proxy;
+    }
+}
@@ -1,34 +1,65 @@
 package com.puntomarisco.backend.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import com.puntomarisco.backend.service.IdempotenciaService;
+import com.puntomarisco.backend.service.TokenService;
+
 import java.util.Arrays;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    // Mientras los clientes no envíen el token, /api/** sigue abierto
+    @Value("${seguridad.token.requerido:false}")
+    private boolean tokenRequerido;
+
+    @Value("${idempotencia.max-cuerpo-bytes:1048576}")
+    private int maxCuerpoIdempotencia;
+
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, TokenService tokenService,
+                                           IdempotenciaService idempotenciaService) throws Exception {
         http
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .csrf(csrf -> csrf.disable())
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
-            .authorizeHttpRequests(authz -> authz
-                .requestMatchers("/api/**").permitAll()
-                .requestMatchers("/ws/**").permitAll()
-                .anyRequest().authenticated()
-            );
+            .addFilterBefore(new TokenAuthenticationFilter(tokenService), UsernamePasswordAuthenticationFilter.class)
+            // Tras la autorización: una petición rechazada no reserva la clave
+            .addFilterAfter(new IdempotenciaFilter(idempotenciaService, maxCuerpoIdempotencia), AuthorizationFilter.class)
+            .exceptionHandling(ex -> ex.authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
+            .authorizeHttpRequests(authz -> {
+                authz
+                    .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                    .requestMatchers("/api/usuarios/login").permitAll()
+                    .requestMatchers("/api/sse/**").permitAll()
+                    .requestMatchers("/ws/**", "/ws-native/**").permitAll();
+                if (tokenRequerido) {
+                    authz
+                        .requestMatchers("/api/usuarios/**", "/api/cache/**").hasRole("ADMIN")
+                        .requestMatchers("/api/**").authenticated();
+                } else {
+                    authz.requestMatchers("/api/**").permitAll();
+                }
+                authz.anyRequest().authenticated();
+            });
 
         return http.build();
     }
@@ -39,6 +70,7 @@ public class SecurityConfig {
         configuration.setAllowedOriginPatterns(Arrays.asList("*"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        configuration.setExposedHeaders(Arrays.asList(IdempotenciaFilter.CABECERA_REPETIDA));
         configuration.setAllowCredentials(true);
         
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
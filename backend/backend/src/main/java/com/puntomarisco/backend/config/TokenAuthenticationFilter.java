@@ -0,0 +1,47 @@
+package com.puntomarisco.backend.config;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.puntomarisco.backend.service.TokenService;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Autentica cada petición a partir del token "Authorization: Bearer ..." emitido en el login.
+ * Solo verifica la firma HMAC en memoria; no consulta la base de datos.
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String PREFIJO = "Bearer ";
+
+    private final TokenService tokenService;
+
+    public TokenAuthenticationFilter(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String cabecera = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (cabecera != null && cabecera.startsWith(PREFIJO)) {
+            tokenService.verificarToken(cabecera.substring(PREFIJO.length()).trim()).ifPresent(sesion -> {
+                UsernamePasswordAuthenticationToken autenticacion = new UsernamePasswordAuthenticationToken(
+                        sesion.getUsuarioId(), null,
+                        List.of(new SimpleGrantedAuthority("ROLE_" + sesion.getRol().name())));
+                SecurityContextHolder.getContext().setAuthentication(autenticacion);
+            });
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,49 @@
+package com.puntomarisco.backend.controller;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.puntomarisco.backend.service.AnaliticaSnapshot;
+
+@RestController
+@RequestMapping("/api/analitica")
+@CrossOrigin(origins = "*")
+public class AnaliticaController {
+
+    @Autowired
+    private AnaliticaSnapshot analiticaSnapshot;
+
+    @GetMapping("/estado")
+    public Map<String, Object> obtenerEstado() {
+        return analiticaSnapshot.obtenerEstado();
+    }
+
+    /**
+     * Consulta agregada sobre el snapshot de ventas facturadas
+     * GET /api/analitica/ventas?agrupar=HORA_SEMANA&desde=...&hasta=...&mesa=...&plato=...&metodoPago=...
+     */
+    @GetMapping("/ventas")
+    public ResponseEntity<List<Map<String, Object>>> consultarVentas(
+            @RequestParam(defaultValue = "NINGUNA") AnaliticaSnapshot.Dimension agrupar,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @RequestParam(required = false) String mesa,
+            @RequestParam(required = false) String plato,
+            @RequestParam(required = false) String metodoPago) {
+        if (!analiticaSnapshot.isDisponible()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(analiticaSnapshot.consultar(agrupar, desde, hasta, mesa, plato, metodoPago));
+    }
+}
@@ -0,0 +1,49 @@
+package com.puntomarisco.backend.controller;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.puntomarisco.backend.service.ArchivoPedidosService;
+
+@RestController
+@RequestMapping("/api/archivo")
+@CrossOrigin(origins = "*")
+public class ArchivoController {
+
+    private static final String ESTADO = "/api/archivo/estado";
+
+    @Autowired
+    private ArchivoPedidosService archivoPedidosService;
+
+    @GetMapping("/estado")
+    public Map<String, Object> obtenerEstado() {
+        return archivoPedidosService.obtenerEstado();
+    }
+
+    /**
+     * Ejecutar el archivado manualmente (normalmente corre de madrugada). Responde 202 de
+     * inmediato; el avance se sigue en GET /api/archivo/estado
+     * POST /api/archivo/ejecutar
+     */
+    @PostMapping("/ejecutar")
+    public ResponseEntity<Map<String, Object>> ejecutarArchivado() {
+        try {
+            boolean iniciado = archivoPedidosService.iniciarArchivado();
+            Map<String, Object> respuesta = new LinkedHashMap<>();
+            respuesta.put("message", iniciado ? "Archivado iniciado" : "Archivado ya en ejecución");
+            respuesta.put("estado", ESTADO);
+            return ResponseEntity.accepted().location(URI.create(ESTADO)).body(respuesta);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.puntomarisco.backend.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.puntomarisco.backend.service.CacheEntidadesService;
+
+@RestController
+@RequestMapping("/api/cache")
+@CrossOrigin(origins = "*")
+public class CacheController {
+
+    @Autowired
+    private CacheEntidadesService cacheEntidadesService;
+
+    @GetMapping("/estadisticas")
+    public Map<String, Object> obtenerEstadisticas() {
+        return cacheEntidadesService.obtenerEstadisticas();
+    }
+
+    // Tras cambios hechos directamente en la base de datos
+    @DeleteMapping
+    public ResponseEntity<Void> vaciar() {
+        cacheEntidadesService.vaciar();
+        return ResponseEntity.noContent().build();
+    }
+}
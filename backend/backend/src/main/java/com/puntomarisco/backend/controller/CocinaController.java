@@ -0,0 +1,37 @@
+package com.puntomarisco.backend.controller;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.puntomarisco.backend.model.TransicionPedido;
+import com.puntomarisco.backend.service.TiemposCocinaService;
+
+@RestController
+@RequestMapping("/api/cocina")
+@CrossOrigin(origins = "*")
+public class CocinaController {
+
+    @Autowired
+    private TiemposCocinaService tiemposCocinaService;
+
+    /**
+     * Percentiles (p50, p95, p99) de preparación y entrega, en milisegundos
+     * GET /api/cocina/tiempos
+     */
+    @GetMapping("/tiempos")
+    public Map<String, Object> obtenerTiempos() {
+        return tiemposCocinaService.obtenerResumen();
+    }
+
+    @GetMapping("/transiciones/{pedidoId}")
+    public List<TransicionPedido> obtenerTransiciones(@PathVariable Long pedidoId) {
+        return tiemposCocinaService.obtenerTransiciones(pedidoId);
+    }
+}
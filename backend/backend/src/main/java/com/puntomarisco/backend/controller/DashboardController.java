@@ -0,0 +1,25 @@
+package com.puntomarisco.backend.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.puntomarisco.backend.dto.Dashboard;
+import com.puntomarisco.backend.service.DashboardService;
+
+@RestController
+@RequestMapping("/api/dashboard")
+@CrossOrigin(origins = "*")
+public class DashboardController {
+
+    @Autowired
+    private DashboardService dashboardService;
+
+    // Mesas, cola de cocina, resumen del día y caja en una sola petición
+    @GetMapping
+    public Dashboard obtenerDashboard() {
+        return dashboardService.obtenerDashboard();
+    }
+}
@@ -1,9 +1,12 @@
 package com.puntomarisco.backend.controller;
 
+import com.puntomarisco.backend.config.FormatosBinariosConfig;
 import com.puntomarisco.backend.model.EstadoCaja;
 import com.puntomarisco.backend.service.EstadoCajaService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,10 +22,14 @@ public class EstadoCajaController {
     @Autowired
     private EstadoCajaService estadoCajaService;
     
+    // JSON compartido entre peticiones simultáneas (ver LecturaCompartida); ?fields= y CBOR/Smile se sirven aparte
     @GetMapping("/estado")
-    public ResponseEntity<EstadoCaja> obtenerEstadoCaja() {
-        EstadoCaja caja = estadoCajaService.obtenerCajaActual();
-        return ResponseEntity.ok(caja);
+    public ResponseEntity<?> obtenerEstadoCaja(@RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (fields != null && !fields.isBlank() || FormatosBinariosConfig.pideBinario(accept)) {
+            return ResponseEntity.ok(estadoCajaService.obtenerCajaActual());
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(estadoCajaService.obtenerCajaActualJson());
     }
     
     @GetMapping("/abierta")
@@ -34,10 +41,10 @@ public class EstadoCajaController {
     @PostMapping("/cerrar")
     public ResponseEntity<EstadoCaja> cerrarCaja(@RequestBody Map<String, Object> request) {
         try {
+            // El total lo lleva el servidor; un totalVentas enviado por clientes antiguos se ignora
             String observaciones = (String) request.get("observaciones");
-            Double totalVentas = Double.valueOf(request.get("totalVentas").toString());
             
-            EstadoCaja cajaCerrada = estadoCajaService.cerrarCaja(observaciones, totalVentas);
+            EstadoCaja cajaCerrada = estadoCajaService.cerrarCaja(observaciones);
             return ResponseEntity.ok(cajaCerrada);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
@@ -1,13 +1,21 @@
 package com.puntomarisco.backend.controller;
 
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import com.puntomarisco.backend.config.FormatosBinariosConfig;
+import com.puntomarisco.backend.dto.CuentaMesa;
+import com.puntomarisco.backend.dto.MesaActualizada;
 import com.puntomarisco.backend.model.Mesa;
 import com.puntomarisco.backend.service.MesaService;
+import com.puntomarisco.backend.service.PedidoService;
 
 @RestController
 @RequestMapping("/api/mesas")
@@ -17,9 +25,17 @@ public class MesaController {
     @Autowired
     private MesaService mesaService;
 
+    @Autowired
+    private PedidoService pedidoService;
+
+    // JSON compartido entre peticiones simultáneas (ver LecturaCompartida); ?fields= y CBOR/Smile se sirven aparte
     @GetMapping
-    public List<Mesa> listarMesas() {
-        return mesaService.obtenerTodasLasMesas();
+    public ResponseEntity<?> listarMesas(@RequestParam(required = false) String fields,
+                                         @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (fields != null && !fields.isBlank() || FormatosBinariosConfig.pideBinario(accept)) {
+            return ResponseEntity.ok(mesaService.obtenerTodasLasMesas());
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(mesaService.obtenerTodasLasMesasJson());
     }
 
     @PostMapping
@@ -36,4 +52,45 @@ public class MesaController {
     public ResponseEntity<Void> eliminarMesa(@PathVariable Long id) {
         return mesaService.eliminarMesa(id);
     }
+
+    // Cuenta consolidada de la mesa; con ?pedidos=1,2 vista previa de una cuenta dividida
+    @GetMapping("/{mesa}/cuenta")
+    public ResponseEntity<CuentaMesa> obtenerCuenta(@PathVariable String mesa,
+                                                    @RequestParam(required = false) List<Long> pedidos) {
+        CuentaMesa cuenta = pedidoService.obtenerCuentaMesa(mesa, pedidos);
+        if (cuenta != null) {
+            return ResponseEntity.ok(cuenta);
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    // Facturar todos los pedidos abiertos de la mesa y devolver la cuenta consolidada
+    @PostMapping("/{mesa}/facturar")
+    public ResponseEntity<CuentaMesa> facturarMesa(@PathVariable String mesa,
+                                                   @RequestBody(required = false) Map<String, String> request) {
+        String metodoPago = request != null ? request.get("metodoPago") : null;
+        CuentaMesa cuenta = pedidoService.facturarMesa(mesa, metodoPago);
+        if (cuenta != null) {
+            return ResponseEntity.ok(cuenta);
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    // Pasar todos los pedidos abiertos a otra mesa: {"destino": "Mesa 5"}
+    @PostMapping("/{mesa}/transferir")
+    public List<MesaActualizada> transferirMesa(@PathVariable String mesa, @RequestBody Map<String, String> request) {
+        return pedidoService.transferirMesa(mesa, request.get("destino"));
+    }
+
+    // Unir otra mesa a esta: {"origen": "Mesa 3"}
+    @PostMapping("/{mesa}/unir")
+    public List<MesaActualizada> unirMesas(@PathVariable String mesa, @RequestBody Map<String, String> request) {
+        return pedidoService.unirMesas(mesa, request.get("origen"));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> manejarSolicitudInvalida(IllegalArgumentException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+    }
 }
+
@@ -1,37 +1,79 @@
 package com.puntomarisco.backend.controller;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.puntomarisco.backend.config.CamposJson;
+import com.puntomarisco.backend.config.FormatosBinariosConfig;
+import com.puntomarisco.backend.dto.CambioEstado;
+import com.puntomarisco.backend.dto.DivisionPedido;
+import com.puntomarisco.backend.dto.MesaActualizada;
+import com.puntomarisco.backend.dto.ResultadoCambioEstado;
 import com.puntomarisco.backend.model.Pedido;
+import com.puntomarisco.backend.service.BloqueoMesas;
+import com.puntomarisco.backend.service.EventosPedidos;
+import com.puntomarisco.backend.service.ExportacionPedidosService;
+import com.puntomarisco.backend.service.JournalPedidos;
 import com.puntomarisco.backend.service.PedidoService;
+import com.puntomarisco.backend.service.TransicionEstadoException;
 
 @RestController
 @RequestMapping("/api/pedidos")
 @CrossOrigin(origins = "*")
 public class PedidoController {
 
+    private static final int MAX_CAMBIOS_LOTE = 500;
+
     @Autowired
     private PedidoService pedidoService;
 
+    @Autowired
+    private ExportacionPedidosService exportacionPedidosService;
+
+    @Autowired
+    private BloqueoMesas bloqueoMesas;
+
+    @Autowired
+    private JournalPedidos journalPedidos;
+
+    @Autowired
+    private EventosPedidos eventosPedidos;
+
+    // 202 sin id si el pedido quedó en el journal local; se enviará a la base de datos al reconectar.
+    // sinConexion distingue una caída de MySQL del modo local, donde todo pedido pasa por el journal
     @PostMapping
-    public Pedido crearPedido(@RequestBody Pedido pedido) {
-        return pedidoService.guardarPedidoConDetalles(pedido);
+    public ResponseEntity<Pedido> crearPedido(@RequestBody Pedido pedido) {
+        Pedido creado = journalPedidos.crear(pedido);
+        if (creado.getId() == null) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(creado);
+        }
+        return ResponseEntity.ok(creado);
     }
 
     @GetMapping
@@ -91,6 +133,21 @@ public class PedidoController {
         return ResponseEntity.notFound().build();
     }
 
+    // Cambios de estado de cocina en lote: [{"pedidoId": 1, "estado": "LISTO"}, ...]
+    @PutMapping("/estados")
+    public ResponseEntity<List<ResultadoCambioEstado>> actualizarEstados(@RequestBody List<CambioEstado> cambios) {
+        if (cambios == null || cambios.isEmpty() || cambios.size() > MAX_CAMBIOS_LOTE) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(pedidoService.actualizarEstados(cambios));
+    }
+
+    // Separar líneas del pedido en un pedido nuevo: {"detalles": [3, 4], "mesa": "Mesa 2"}
+    @PostMapping("/{id}/dividir")
+    public List<MesaActualizada> dividirPedido(@PathVariable Long id, @RequestBody DivisionPedido division) {
+        return pedidoService.dividirPedido(id, division.getDetalles(), division.getMesa());
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> eliminarPedido(@PathVariable Long id) {
         try {
@@ -101,16 +158,101 @@ public class PedidoController {
         }
     }
 
+    // Con el journal de eventos habilitado se sirven desde memoria
     @GetMapping("/activos")
     public List<Pedido> obtenerPedidosActivos() {
+        if (eventosPedidos.isListo()) {
+            return eventosPedidos.obtenerActivos();
+        }
         return pedidoService.obtenerPedidos().stream()
                 .filter(p -> !p.getFacturado())
                 .toList();
     }
 
+    // JSON compartido entre peticiones simultáneas (ver LecturaCompartida); con ?fields= o en CBOR/Smile
+    // se consulta aparte, y con ?fields= las líneas solo se cargan si se piden
     @GetMapping("/del-dia")
-    public List<Pedido> obtenerPedidosDelDia() {
-        return pedidoService.obtenerPedidosDelDia();
+    public ResponseEntity<?> obtenerPedidosDelDia(@RequestParam(required = false) String fields,
+                                                  @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        boolean seleccion = fields != null && !fields.isBlank();
+        if (seleccion || FormatosBinariosConfig.pideBinario(accept)) {
+            return ResponseEntity.ok(pedidoService.obtenerPedidosDelDia(!seleccion || CamposJson.incluye(fields, "detalles")));
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(pedidoService.obtenerPedidosDelDiaJson());
+    }
+
+    // Exportación en streaming para contabilidad: GET /api/pedidos/export?from=...&to=...&format=csv|ndjson&gzip=true
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportarPedidos(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        ExportacionPedidosService.Formato formato;
+        try {
+            formato = ExportacionPedidosService.Formato.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!from.isBefore(to)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        StreamingResponseBody cuerpo = salida -> {
+            if (gzip) {
+                GZIPOutputStream comprimida = new GZIPOutputStream(salida, 64 * 1024);
+                exportacionPedidosService.exportar(comprimida, from, to, formato);
+                comprimida.finish();
+            } else {
+                exportacionPedidosService.exportar(salida, from, to, formato);
+            }
+        };
+
+        String extension = formato == ExportacionPedidosService.Formato.CSV ? "csv" : "ndjson";
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .contentType(formato == ExportacionPedidosService.Formato.CSV
+                        ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"pedidos." + extension + "\"");
+        if (gzip) {
+            respuesta.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return respuesta.body(cuerpo);
+    }
+
+    // Journal de eventos de pedidos desde una secuencia, en NDJSON o, con Accept application/cbor o
+    // application/x-jackson-smile, como secuencia binaria (depuración y reproducción de cargas)
+    @GetMapping("/eventos")
+    public ResponseEntity<StreamingResponseBody> exportarEventos(@RequestParam(defaultValue = "0") long desde,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (!eventosPedidos.isListo()) {
+            return ResponseEntity.notFound().build();
+        }
+        MediaType binario = FormatosBinariosConfig.tipoBinario(accept);
+        if (binario != null) {
+            StreamingResponseBody cuerpo = salida -> eventosPedidos.exportar(salida, desde,
+                    FormatosBinariosConfig.fabrica(binario));
+            return ResponseEntity.ok().contentType(binario).body(cuerpo);
+        }
+        StreamingResponseBody cuerpo = salida -> eventosPedidos.exportar(salida, desde);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(cuerpo);
+    }
+
+    // Pedidos aceptados en el journal local que aún no llegaron a la base de datos
+    @GetMapping("/locales")
+    public List<Pedido> obtenerPedidosLocales() {
+        return journalPedidos.obtenerPendientes();
+    }
+
+    @GetMapping("/journal")
+    public Map<String, Object> obtenerEstadoJournal() {
+        return journalPedidos.obtenerEstado();
+    }
+
+    // Contención de los locks por mesa
+    @GetMapping("/bloqueos")
+    public Map<String, Object> obtenerMetricasBloqueo() {
+        return bloqueoMesas.obtenerMetricas();
     }
 
     // Nuevo endpoint para generar QR de un pedido
@@ -123,6 +265,23 @@ public class PedidoController {
         return ResponseEntity.notFound().build();
     }
 
+    // Transición de estado no permitida o adelantada por otra petición
+    @ExceptionHandler(TransicionEstadoException.class)
+    public ResponseEntity<Map<String, Object>> manejarTransicionInvalida(TransicionEstadoException e) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("error", e.getMessage());
+        error.put("pedidoId", e.getPedidoId());
+        error.put("estadoActual", e.getEstadoActual());
+        error.put("estadoSolicitado", e.getEstadoSolicitado());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+
+    // Datos inválidos en operaciones de mesas o división de pedidos
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> manejarSolicitudInvalida(IllegalArgumentException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+    }
+
     // WebSocket endpoint para recibir pedidos y enviarlos a todos los suscriptores
     @MessageMapping("/pedido")
     @SendTo("/topic/pedidos")
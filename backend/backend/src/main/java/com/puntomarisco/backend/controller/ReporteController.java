@@ -0,0 +1,70 @@
+package com.puntomarisco.backend.controller;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.puntomarisco.backend.service.ReporteHistorico;
+import com.puntomarisco.backend.service.ReporteHistoricoService;
+
+@RestController
+@RequestMapping("/api/reportes")
+@CrossOrigin(origins = "*")
+public class ReporteController {
+
+    @Autowired
+    private ReporteHistoricoService reporteHistoricoService;
+
+    /**
+     * Inicia un reporte histórico asíncrono
+     * POST /api/reportes/historico?desde=...&hasta=...
+     */
+    @PostMapping("/historico")
+    public ResponseEntity<Map<String, Object>> iniciarReporte(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta) {
+        try {
+            ReporteHistorico reporte = reporteHistoricoService.iniciarReporte(desde, hasta);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(reporte.aMapa());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    /**
+     * Consultar progreso y resultado (parcial o final) de un reporte
+     * GET /api/reportes/historico/{id}
+     */
+    @GetMapping("/historico/{id}")
+    public ResponseEntity<Map<String, Object>> obtenerReporte(@PathVariable String id) {
+        ReporteHistorico reporte = reporteHistoricoService.obtenerReporte(id);
+        if (reporte != null) {
+            return ResponseEntity.ok(reporte.aMapa());
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Cancelar un reporte en curso
+     * DELETE /api/reportes/historico/{id}
+     */
+    @DeleteMapping("/historico/{id}")
+    public ResponseEntity<Void> cancelarReporte(@PathVariable String id) {
+        if (reporteHistoricoService.cancelarReporte(id)) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.notFound().build();
+    }
+}
@@ -1,6 +1,9 @@
 package com.puntomarisco.backend.controller;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.slf4j.Logger;
@@ -11,9 +14,11 @@ import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.puntomarisco.backend.dto.MesaActualizada;
 import com.puntomarisco.backend.model.Pedido;
 
 @RestController
@@ -77,27 +82,59 @@ public class SSEController {
         }
         
         logger.info("📤 Enviando pedido a {} conexiones SSE", emitters.size());
+        try {
+            difundir("nuevo-pedido", pedido);
+        } catch (IOException e) {
+            logger.error("❌ Error serializando pedido para SSE: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Enviar en un solo evento varios pedidos cambiados a la vez (cambios de estado en lote)
+     */
+    public void enviarPedidosActualizados(List<Pedido> pedidos) throws IOException {
+        if (emitters.isEmpty() || pedidos.isEmpty()) {
+            return;
+        }
         
-        // Lista para remover emitters que fallen
-        CopyOnWriteArrayList<SseEmitter> emittersToRemove = new CopyOnWriteArrayList<>();
+        logger.info("📤 Enviando {} pedidos actualizados a {} conexiones SSE", pedidos.size(), emitters.size());
+        difundir("pedidos-actualizados", pedidos);
+    }
+    
+    /**
+     * Enviar el estado de una mesa tras transferir, unir o dividir sus pedidos
+     */
+    public void enviarMesaActualizada(MesaActualizada mesa) throws IOException {
+        if (emitters.isEmpty()) {
+            return;
+        }
+        
+        difundir("mesa-actualizada", mesa);
+    }
+    
+    /**
+     * El JSON y el evento se construyen una sola vez y se escriben tal cual en cada conexión
+     */
+    private void difundir(String nombre, Object datos) throws IOException {
+        Set<ResponseBodyEmitter.DataWithMediaType> evento = SseEmitter.event()
+            .name(nombre)
+            .data(objectMapper.writeValueAsString(datos))
+            .build();
         
+        // Lista para remover emitters que fallen
+        List<SseEmitter> emittersToRemove = new ArrayList<>();
         for (SseEmitter emitter : emitters) {
             try {
-                String pedidoJson = objectMapper.writeValueAsString(pedido);
-                emitter.send(SseEmitter.event()
-                    .name("nuevo-pedido")
-                    .data(pedidoJson));
-                logger.debug("✅ Pedido enviado exitosamente via SSE");
+                emitter.send(evento);
             } catch (IOException e) {
-                logger.error("❌ Error enviando pedido via SSE: {}", e.getMessage());
+                logger.error("❌ Error enviando {} via SSE: {}", nombre, e.getMessage());
                 emittersToRemove.add(emitter);
             }
         }
         
         // Remover emitters que fallaron
-        emitters.removeAll(emittersToRemove);
-        
         if (!emittersToRemove.isEmpty()) {
+            emitters.removeAll(emittersToRemove);
             logger.info("🧹 Removidas {} conexiones SSE fallidas", emittersToRemove.size());
         }
     }
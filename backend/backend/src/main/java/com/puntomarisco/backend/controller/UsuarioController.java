@@ -1,11 +1,16 @@
 package com.puntomarisco.backend.controller;
 
 import com.puntomarisco.backend.model.Usuario;
+import com.puntomarisco.backend.service.AutenticacionSaturadaException;
+import com.puntomarisco.backend.service.HashContrasenasService;
+import com.puntomarisco.backend.service.TokenService;
 import com.puntomarisco.backend.service.UsuarioService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -25,12 +30,19 @@ public class UsuarioController {
     @Autowired
     private UsuarioService usuarioService;
     
+    @Autowired
+    private TokenService tokenService;
+    
+    @Autowired
+    private HashContrasenasService hashContrasenasService;
+    
     /**
      * Endpoint para autenticación de usuarios
      * POST /api/usuarios/login
      */
     @PostMapping("/login")
-    public ResponseEntity<Map<String, Object>> login(@RequestBody Map<String, String> credenciales) {
+    public ResponseEntity<Map<String, Object>> login(@RequestBody Map<String, String> credenciales,
+                                                     HttpServletRequest request) {
         Map<String, Object> response = new HashMap<>();
         
         try {
@@ -45,7 +57,7 @@ public class UsuarioController {
             }
             
             // Autenticar usuario
-            Usuario usuario = usuarioService.autenticarUsuario(email, password);
+            Usuario usuario = usuarioService.autenticarUsuario(email, password, request.getRemoteAddr());
             
             if (usuario != null) {
                 // Login exitoso - crear respuesta sin incluir la contraseña
@@ -60,6 +72,10 @@ public class UsuarioController {
                 response.put("success", true);
                 response.put("message", "Login exitoso");
                 response.put("usuario", userData);
+                // Token para las siguientes peticiones (Authorization: Bearer ...)
+                response.put("token", tokenService.emitirToken(usuario));
+                response.put("tokenTipo", "Bearer");
+                response.put("expiraEn", tokenService.getDuracionSegundos());
                 
                 logger.info("Login exitoso para usuario: {}", email);
                 return ResponseEntity.ok(response);
@@ -72,6 +88,14 @@ public class UsuarioController {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
             }
             
+        } catch (AutenticacionSaturadaException e) {
+            // Rechazo rápido: demasiados intentos (429) o pool de BCrypt lleno (503)
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(e.isLimiteIntentos() ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getReintentarEnSegundos()))
+                    .body(response);
+            
         } catch (Exception e) {
             logger.error("Error durante login", e);
             response.put("success", false);
@@ -80,6 +104,15 @@ public class UsuarioController {
         }
     }
     
+    /**
+     * Métricas del pool de BCrypt y de los límites de intentos
+     * GET /api/usuarios/login/metricas
+     */
+    @GetMapping("/login/metricas")
+    public ResponseEntity<Map<String, Object>> obtenerMetricasLogin() {
+        return ResponseEntity.ok(hashContrasenasService.obtenerMetricas());
+    }
+    
     /**
      * Obtener todos los usuarios
      * GET /api/usuarios
@@ -0,0 +1,14 @@
+package com.puntomarisco.backend.dto;
+
+import lombok.*;
+
+/**
+ * Elemento de un cambio de estado en lote: pedido y estado destino
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CambioEstado {
+    private Long pedidoId;
+    private String estado;
+}
@@ -0,0 +1,30 @@
+package com.puntomarisco.backend.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.puntomarisco.backend.model.Centimos;
+import com.puntomarisco.backend.model.Pedido;
+
+import lombok.*;
+
+/**
+ * Cuenta consolidada de una mesa: los pedidos incluidos y sus líneas agrupadas por plato
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CuentaMesa {
+    private String mesa;
+    private List<Long> pedidos;
+    private List<LineaCuenta> lineas;
+    @JsonIgnore
+    private long totalCentimos;
+    private Pedido.MetodoPago metodoPago;
+    private LocalDateTime fecha;
+
+    public Double getTotal() {
+        return Centimos.aSoles(totalCentimos);
+    }
+}
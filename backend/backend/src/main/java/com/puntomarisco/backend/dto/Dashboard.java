@@ -0,0 +1,60 @@
+package com.puntomarisco.backend.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.puntomarisco.backend.model.Centimos;
+import com.puntomarisco.backend.model.EstadoCaja;
+import com.puntomarisco.backend.model.Mesa;
+import com.puntomarisco.backend.model.Pedido;
+
+import lombok.*;
+
+/**
+ * Todo lo que muestran el tablero de mesas y el cierre de caja en una sola respuesta:
+ * mesas con sus pedidos abiertos, cola de cocina por estado, resumen del día y caja actual
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Dashboard {
+    private List<MesaResumen> mesas;
+    private Map<Pedido.EstadoPedido, Long> colaCocina; // pedidos abiertos por estado
+    private ResumenDia dia;
+    private EstadoCaja caja;
+    private LocalDateTime fecha;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class MesaResumen {
+        private Long id; // null si los pedidos son de una mesa que ya no existe
+        private String nombre;
+        private Mesa.EstadoMesa estado;
+        private long pedidosAbiertos;
+        @JsonIgnore
+        private long totalCentimos;
+        private Long ultimoPedidoId;
+
+        public Double getTotal() {
+            return Centimos.aSoles(totalCentimos);
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ResumenDia {
+        private long pedidos;
+        private long facturados;
+        private long pendientes;
+        @JsonIgnore
+        private long ventasCentimos;
+
+        public Double getVentas() {
+            return Centimos.aSoles(ventasCentimos);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.puntomarisco.backend.dto;
+
+import java.util.List;
+
+import lombok.*;
+
+/**
+ * Solicitud para separar líneas de un pedido; mesa es opcional (por defecto, la del pedido)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DivisionPedido {
+    private List<Long> detalles;
+    private String mesa;
+}
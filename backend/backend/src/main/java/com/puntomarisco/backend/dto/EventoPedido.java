@@ -0,0 +1,41 @@
+package com.puntomarisco.backend.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.puntomarisco.backend.model.Pedido;
+
+import lombok.*;
+
+/**
+ * Evento de dominio de un pedido tal como se guarda en el journal de eventos.
+ * CREADO y LINEAS_CAMBIADAS llevan el pedido completo; ESTADO_CAMBIADO, FACTURADO y ELIMINADO
+ * solo el id y el dato que cambia; MESA_ACTUALIZADA los pedidos abiertos de la mesa tras
+ * transferir, unir o dividir.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class EventoPedido {
+
+    public enum Tipo {
+        CREADO,
+        LINEAS_CAMBIADAS,
+        ESTADO_CAMBIADO,
+        FACTURADO,
+        ELIMINADO,
+        MESA_ACTUALIZADA
+    }
+
+    private long secuencia; // la asigna el journal al escribir
+    private Tipo tipo;
+    private LocalDateTime fecha;
+    private Long pedidoId;
+    private Pedido.EstadoPedido estado;
+    private Pedido.MetodoPago metodoPago;
+    private String mesa;
+    private List<Pedido> pedidos;
+    private List<Long> eliminados;
+}
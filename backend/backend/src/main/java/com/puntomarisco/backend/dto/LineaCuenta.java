@@ -0,0 +1,37 @@
+package com.puntomarisco.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.puntomarisco.backend.model.Centimos;
+
+import lombok.*;
+
+/**
+ * Línea de la cuenta consolidada de una mesa: un plato a un precio, sumado entre todos los pedidos.
+ * Los importes van en céntimos; en JSON se publican en soles.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LineaCuenta {
+    private String plato;
+    private Integer cantidad;
+    @JsonIgnore
+    private long precioUnitarioCentimos;
+    @JsonIgnore
+    private long subtotalCentimos;
+
+    // Para la consulta agregada: SUM de columnas enteras devuelve Long
+    public LineaCuenta(String plato, Long cantidad, Long precioUnitarioCentimos, Long subtotalCentimos) {
+        this(plato, cantidad != null ? cantidad.intValue() : 0,
+                precioUnitarioCentimos != null ? precioUnitarioCentimos : 0L,
+                subtotalCentimos != null ? subtotalCentimos : 0L);
+    }
+
+    public Double getPrecioUnitario() {
+        return Centimos.aSoles(precioUnitarioCentimos);
+    }
+
+    public Double getSubtotal() {
+        return Centimos.aSoles(subtotalCentimos);
+    }
+}
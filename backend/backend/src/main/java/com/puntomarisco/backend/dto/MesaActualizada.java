@@ -0,0 +1,22 @@
+package com.puntomarisco.backend.dto;
+
+import java.util.List;
+
+import com.puntomarisco.backend.model.Mesa;
+import com.puntomarisco.backend.model.Pedido;
+
+import lombok.*;
+
+/**
+ * Estado de una mesa tras una operación de mesas (transferir, unir, dividir):
+ * sus pedidos abiertos y los pedidos que dejaron de existir al consolidarse
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MesaActualizada {
+    private String mesa;
+    private Mesa.EstadoMesa estado;
+    private List<Pedido> pedidos;
+    private List<Long> eliminados;
+}
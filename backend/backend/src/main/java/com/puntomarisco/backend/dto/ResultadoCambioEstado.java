@@ -0,0 +1,19 @@
+package com.puntomarisco.backend.dto;
+
+import com.puntomarisco.backend.model.Pedido;
+
+import lombok.*;
+
+/**
+ * Resultado de un elemento de un cambio de estado en lote
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoCambioEstado {
+    private Long pedidoId;
+    private String estadoSolicitado;
+    private Pedido.EstadoPedido estadoAnterior;
+    private boolean aplicado;
+    private String motivo; // null si se aplicó
+}
@@ -0,0 +1,27 @@
+package com.puntomarisco.backend.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Conversión entre importes en soles (JSON, clientes existentes) y céntimos enteros, que es
+ * como se guardan y se suman todos los importes.
+ */
+public final class Centimos {
+
+    private Centimos() {
+    }
+
+    // null cuenta como 0, igual que se trataba un precio sin informar al calcular totales
+    public static long desde(Double soles) {
+        return soles != null ? Math.round(soles * 100) : 0L;
+    }
+
+    public static Double aSoles(long centimos) {
+        return centimos / 100.0;
+    }
+
+    // Representación exacta con dos decimales para exportaciones
+    public static BigDecimal aDecimal(long centimos) {
+        return BigDecimal.valueOf(centimos, 2);
+    }
+}
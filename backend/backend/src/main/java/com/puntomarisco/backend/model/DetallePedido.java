@@ -2,9 +2,12 @@ package com.puntomarisco.backend.model;
 
 import jakarta.persistence.*;
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.*;
 
 @Entity
+@Table(indexes = @Index(name = "idx_detalle_plato_id", columnList = "plato_id"))
 @Data
 public class DetallePedido {
     @Id
@@ -12,8 +15,19 @@ public class DetallePedido {
     private Long id;
 
     private String plato; // Ej: "Ceviche", "Chicharrón", etc.
+
+    // Clave foránea a plato(id); null si el plato no está en la carta
+    @Column(name = "plato_id")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long platoId;
+
     private Integer cantidad = 1;
-    private Double precio;
+
+    // Precio unitario en céntimos; en JSON se sigue publicando "precio" en soles
+    @Column(name = "precio_centimos", nullable = false, columnDefinition = "bigint default 0")
+    @JsonIgnore
+    private long precioCentimos;
+
     private String notas; // Ej: "sin cebolla", puede ser null o vacío si no hay notas
     
     @Enumerated(EnumType.STRING)
@@ -24,6 +38,19 @@ public class DetallePedido {
     @JsonBackReference
     private Pedido pedido;
     
+    public Double getPrecio() {
+        return Centimos.aSoles(precioCentimos);
+    }
+
+    public void setPrecio(Double precio) {
+        this.precioCentimos = Centimos.desde(precio);
+    }
+
+    // Importe de la línea en céntimos, sin mirar si está cancelada
+    public long subtotalCentimos() {
+        return cantidad != null ? precioCentimos * cantidad : 0L;
+    }
+
     public enum EstadoDetalle {
         NORMAL,
         EDITADO,
@@ -2,6 +2,7 @@ package com.puntomarisco.backend.model;
 
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 
 @Entity
@@ -15,7 +16,12 @@ public class EstadoCaja {
     private Boolean abierta = true;
     private LocalDateTime horaApertura;
     private LocalDateTime horaCierre;
-    private Double totalVentas = 0.0;
+
+    // Ventas del día en céntimos; en JSON se sigue publicando "totalVentas" en soles
+    @Column(name = "total_ventas_centimos", nullable = false, columnDefinition = "bigint default 0")
+    @JsonIgnore
+    private long totalVentasCentimos;
+
     private String observaciones;
     
     // Constructor para nueva caja
@@ -25,6 +31,14 @@ public class EstadoCaja {
         this.abierta = true;
     }
     
+    public Double getTotalVentas() {
+        return Centimos.aSoles(totalVentasCentimos);
+    }
+
+    public void setTotalVentas(Double totalVentas) {
+        this.totalVentasCentimos = Centimos.desde(totalVentas);
+    }
+
     public void cerrarCaja(String observaciones) {
         this.abierta = false;
         this.horaCierre = LocalDateTime.now();
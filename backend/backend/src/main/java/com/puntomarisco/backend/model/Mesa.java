@@ -1,10 +1,18 @@
 package com.puntomarisco.backend.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import jakarta.persistence.*;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import lombok.*;
 
 @Entity
+@Table(indexes = @Index(name = "idx_mesa_nombre", columnList = "nombre"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "mesas")
 @Data
 public class Mesa {
     @Id
@@ -16,6 +24,12 @@ public class Mesa {
     @Enumerated(EnumType.STRING)
     private EstadoMesa estado = EstadoMesa.LIBRE;
     
+    // Detecta cambios concurrentes hechos desde otra instancia del backend
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private long version;
+
     public enum EstadoMesa {
         LIBRE,
         OCUPADA,
@@ -2,24 +2,43 @@ package com.puntomarisco.backend.model;
 
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.*;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_pedido_mesa_id", columnList = "mesa_id, facturado"),
+        @Index(name = "idx_pedido_clave_local", columnList = "clave_local", unique = true)
+})
 @Data
 public class Pedido {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    private String mesa;
+    private String mesa; // nombre de la mesa al tomar el pedido
+
+    // Clave foránea a mesa(id); la resuelve el servidor a partir del nombre
+    @Column(name = "mesa_id")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long mesaId;
     
     @Enumerated(EnumType.STRING)
     private EstadoPedido estado = EstadoPedido.PENDIENTE;
     
     private LocalDateTime hora;
-    private Double total;
+
+    // Importe en céntimos; en JSON se sigue publicando "total" en soles
+    @Column(name = "total_centimos", nullable = false, columnDefinition = "bigint default 0")
+    @JsonIgnore
+    private long totalCentimos;
+
     private Boolean facturado = false;
     
     // Nuevo campo para método de pago
@@ -29,17 +48,55 @@ public class Pedido {
     // Nuevo campo para URL del QR
     private String qrUrl;
 
+    // Bloqueo optimista entre nodos; las escrituras de un mismo nodo ya van serializadas por mesa
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private long version;
+
+    // Identificador asignado al recibir el pedido; evita duplicarlo al reenviarlo desde el journal local
+    @Column(name = "clave_local", length = 36)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private String claveLocal;
+
+    // Solo en la respuesta 202: el pedido quedó en el journal porque la base de datos no responde
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Boolean sinConexion;
+
     @OneToMany(mappedBy = "pedido", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonManagedReference
     private List<DetallePedido> detalles;
     
+    public Double getTotal() {
+        return Centimos.aSoles(totalCentimos);
+    }
+
+    public void setTotal(Double total) {
+        this.totalCentimos = Centimos.desde(total);
+    }
+
     public enum EstadoPedido {
         PENDIENTE,
         EN_PROCESO,
         LISTO,
         ENTREGADO,
         FACTURADO,
-        CANCELADO
+        CANCELADO;
+
+        /**
+         * Tabla de transiciones: estados desde los que se puede pasar a este
+         */
+        public Set<EstadoPedido> predecesores() {
+            return switch (this) {
+                case PENDIENTE -> EnumSet.noneOf(EstadoPedido.class);
+                case EN_PROCESO -> EnumSet.of(PENDIENTE, LISTO);
+                case LISTO -> EnumSet.of(PENDIENTE, EN_PROCESO);
+                case ENTREGADO -> EnumSet.of(EN_PROCESO, LISTO);
+                case FACTURADO, CANCELADO -> EnumSet.of(PENDIENTE, EN_PROCESO, LISTO, ENTREGADO);
+            };
+        }
     }
     
     public enum MetodoPago {
@@ -5,8 +5,16 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import lombok.*;
 @Entity
+@Table(indexes = @Index(name = "idx_plato_nombre", columnList = "nombre"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "platos")
 @Data
 public class Plato {
     @Id
@@ -14,7 +22,16 @@ public class Plato {
     private Long id;
 
     private String nombre;
-    private Double precio;
 
-    // getters y setters
+    @Column(name = "precio_centimos", nullable = false, columnDefinition = "bigint default 0")
+    @JsonIgnore
+    private long precioCentimos;
+
+    public Double getPrecio() {
+        return Centimos.aSoles(precioCentimos);
+    }
+
+    public void setPrecio(Double precio) {
+        this.precioCentimos = Centimos.desde(precio);
+    }
 }
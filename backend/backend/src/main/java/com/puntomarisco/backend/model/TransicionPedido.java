@@ -0,0 +1,43 @@
+package com.puntomarisco.backend.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import lombok.*;
+
+/**
+ * Registro inmutable de cada cambio de estado de un pedido (solo se inserta, nunca se actualiza)
+ */
+@Entity
+@Table(name = "pedido_transicion", indexes = @Index(name = "idx_transicion_pedido", columnList = "pedido_id"))
+@Data
+@NoArgsConstructor
+public class TransicionPedido {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "pedido_id", nullable = false)
+    private Long pedidoId;
+
+    @Enumerated(EnumType.STRING)
+    private Pedido.EstadoPedido estadoAnterior;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Pedido.EstadoPedido estadoNuevo;
+
+    @Column(nullable = false)
+    private LocalDateTime fecha;
+
+    // Milisegundos que el pedido permaneció en el estado anterior (null si se desconoce)
+    private Long duracionMs;
+
+    public TransicionPedido(Long pedidoId, Pedido.EstadoPedido estadoAnterior, Pedido.EstadoPedido estadoNuevo,
+                            LocalDateTime fecha, Long duracionMs) {
+        this.pedidoId = pedidoId;
+        this.estadoAnterior = estadoAnterior;
+        this.estadoNuevo = estadoNuevo;
+        this.fecha = fecha;
+        this.duracionMs = duracionMs;
+    }
+}
@@ -2,6 +2,7 @@ package com.puntomarisco.backend.repository;
 
 import com.puntomarisco.backend.model.EstadoCaja;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -24,4 +25,10 @@ public interface EstadoCajaRepository extends JpaRepository<EstadoCaja, Long> {
     
     @Query("SELECT e FROM EstadoCaja e ORDER BY e.fecha DESC")
     List<EstadoCaja> findAllOrderByFechaDesc();
+    
+    // Acumular ventas en la caja del día sin cargarla; una caja cerrada no suma
+    @Modifying
+    @Query("UPDATE EstadoCaja e SET e.totalVentasCentimos = e.totalVentasCentimos + :centimos " +
+           "WHERE e.fecha = :fecha AND e.abierta = true")
+    int sumarVentas(@Param("fecha") LocalDateTime fecha, @Param("centimos") long centimos);
 }
@@ -2,14 +2,25 @@ package com.puntomarisco.backend.repository;
 
 import java.util.List;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.puntomarisco.backend.model.Mesa;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
 public interface MesaRepository extends JpaRepository<Mesa, Long> {
     
+    // Lista de mesas desde la caché de consultas mientras la tabla no cambie
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Override
+    List<Mesa> findAll();
+    
     // Buscar mesa por nombre
     Mesa findByNombre(String nombre);
     
@@ -18,5 +29,10 @@ public interface MesaRepository extends JpaRepository<Mesa, Long> {
     
     // Buscar mesas libres
     List<Mesa> findByEstadoOrderByNombre(Mesa.EstadoMesa estado);
+    
+    // ID de una mesa por nombre (la más antigua si hay nombres repetidos)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT MIN(m.id) FROM Mesa m WHERE m.nombre = :nombre")
+    Long findIdByNombre(@Param("nombre") String nombre);
 }
 
@@ -1,15 +1,25 @@
 package com.puntomarisco.backend.repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.puntomarisco.backend.dto.LineaCuenta;
+import com.puntomarisco.backend.model.DetallePedido;
 import com.puntomarisco.backend.model.Pedido;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
 public interface PedidoRepository extends JpaRepository<Pedido, Long> {
     
@@ -28,6 +38,11 @@ public interface PedidoRepository extends JpaRepository<Pedido, Long> {
     // Buscar pedidos por rango de fechas
     List<Pedido> findByHoraBetween(LocalDateTime inicio, LocalDateTime fin);
     
+    // Lo mismo con las líneas en la misma consulta, cuando la respuesta las incluye
+    @EntityGraph(attributePaths = "detalles")
+    @Query("SELECT p FROM Pedido p WHERE p.hora BETWEEN :inicio AND :fin")
+    List<Pedido> findConDetallesByHoraBetween(@Param("inicio") LocalDateTime inicio, @Param("fin") LocalDateTime fin);
+    
     // Buscar pedidos por estado ordenados por hora
     @Query("SELECT p FROM Pedido p WHERE p.estado = :estado ORDER BY p.hora DESC")
     List<Pedido> findByEstadoOrderByHoraDesc(@Param("estado") String estado);
@@ -39,6 +54,132 @@ public interface PedidoRepository extends JpaRepository<Pedido, Long> {
     // Buscar pedidos activos (no facturados) ordenados por hora
     @Query("SELECT p FROM Pedido p WHERE p.facturado = false ORDER BY p.hora ASC")
     List<Pedido> findPedidosActivos();
+    
+    // Solo la mesa de un pedido, para tomar su lock antes de cargarlo
+    @Query("SELECT p.mesa FROM Pedido p WHERE p.id = :id")
+    Optional<String> findMesaById(@Param("id") Long id);
+    
+    // ¿Quedan pedidos sin facturar en la mesa?
+    boolean existsByMesaAndFacturadoFalse(String mesa);
+
+    // Tablero: pedidos abiertos y pedidos del día agrupados por mesa, estado y facturado en una sola consulta;
+    // la última columna cuenta los que son del día
+    @Query("SELECT p.mesa, p.estado, p.facturado, COUNT(p), COALESCE(SUM(p.totalCentimos), 0), MAX(p.id), " +
+           "SUM(CASE WHEN p.hora >= :inicio THEN 1 ELSE 0 END) FROM Pedido p " +
+           "WHERE p.facturado = false OR p.hora >= :inicio GROUP BY p.mesa, p.estado, p.facturado")
+    List<Object[]> resumirAbiertosYDelDia(@Param("inicio") LocalDateTime inicio);
+
+    // ¿Llegó ya a la base de datos el pedido guardado en el journal local?
+    boolean existsByClaveLocal(String claveLocal);
+    
+    // Solo el estado de un pedido (por clave primaria, sin detalles)
+    @Query("SELECT p.estado FROM Pedido p WHERE p.id = :id")
+    Optional<Pedido.EstadoPedido> findEstadoById(@Param("id") Long id);
+    
+    // Cambio de estado condicional: devuelve 0 si el pedido no está en un estado permitido
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Pedido p SET p.estado = :nuevo, p.version = p.version + 1 WHERE p.id = :id AND p.estado IN :permitidos")
+    int actualizarEstadoSi(@Param("id") Long id, @Param("nuevo") Pedido.EstadoPedido nuevo,
+                           @Param("permitidos") Collection<Pedido.EstadoPedido> permitidos);
+    
+    // Facturación condicional sin cambiar el método de pago
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Pedido p SET p.estado = :facturado, p.facturado = true, p.version = p.version + 1 " +
+           "WHERE p.id = :id AND p.estado IN :permitidos")
+    int facturarSi(@Param("id") Long id, @Param("facturado") Pedido.EstadoPedido facturado,
+                   @Param("permitidos") Collection<Pedido.EstadoPedido> permitidos);
+    
+    // Facturación condicional registrando el método de pago
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Pedido p SET p.estado = :facturado, p.facturado = true, p.metodoPago = :metodoPago, " +
+           "p.version = p.version + 1 WHERE p.id = :id AND p.estado IN :permitidos")
+    int facturarConPagoSi(@Param("id") Long id, @Param("facturado") Pedido.EstadoPedido facturado,
+                          @Param("metodoPago") Pedido.MetodoPago metodoPago,
+                          @Param("permitidos") Collection<Pedido.EstadoPedido> permitidos);
+    
+    // Pedidos sin facturar de una mesa con sus detalles, en una sola consulta
+    @Query("SELECT DISTINCT p FROM Pedido p LEFT JOIN FETCH p.detalles WHERE p.mesa = :mesa AND p.facturado = false ORDER BY p.hora")
+    List<Pedido> findAbiertosConDetalles(@Param("mesa") String mesa);
+    
+    // Facturación en bloque de varios pedidos; devuelve cuántos estaban en un estado permitido
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Pedido p SET p.estado = :facturado, p.facturado = true, p.metodoPago = :metodoPago, " +
+           "p.version = p.version + 1 WHERE p.id IN :ids AND p.estado IN :permitidos")
+    int facturarTodosSi(@Param("ids") Collection<Long> ids, @Param("facturado") Pedido.EstadoPedido facturado,
+                        @Param("metodoPago") Pedido.MetodoPago metodoPago,
+                        @Param("permitidos") Collection<Pedido.EstadoPedido> permitidos);
+    
+    // IDs de los pedidos abiertos de una mesa en los estados indicados
+    @Query("SELECT p.id FROM Pedido p WHERE p.mesa = :mesa AND p.facturado = false AND p.estado IN :estados ORDER BY p.id")
+    List<Long> findIdsAbiertos(@Param("mesa") String mesa, @Param("estados") Collection<Pedido.EstadoPedido> estados);
+    
+    // Cuenta agregada por plato y precio de los pedidos indicados, sin líneas canceladas
+    @Query("SELECT new com.puntomarisco.backend.dto.LineaCuenta(d.plato, SUM(d.cantidad), d.precioCentimos, " +
+           "SUM(d.cantidad * d.precioCentimos)) " +
+           "FROM Pedido p JOIN p.detalles d WHERE p.id IN :ids AND d.estado <> :cancelado " +
+           "GROUP BY d.plato, d.precioCentimos ORDER BY d.plato, d.precioCentimos")
+    List<LineaCuenta> agregarCuenta(@Param("ids") Collection<Long> ids,
+                                    @Param("cancelado") DetallePedido.EstadoDetalle cancelado);
+    
+    // [id, mesa] de varios pedidos, para tomar sus locks
+    @Query("SELECT p.id, p.mesa FROM Pedido p WHERE p.id IN :ids")
+    List<Object[]> findMesasByIds(@Param("ids") Collection<Long> ids);
+    
+    // [id, estado] de varios pedidos
+    @Query("SELECT p.id, p.estado FROM Pedido p WHERE p.id IN :ids")
+    List<Object[]> findEstadosByIds(@Param("ids") Collection<Long> ids);
+    
+    // Cambio de estado condicional en bloque hacia un mismo estado destino
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Pedido p SET p.estado = :nuevo, p.version = p.version + 1 WHERE p.id IN :ids AND p.estado IN :permitidos")
+    int actualizarEstadosSi(@Param("ids") Collection<Long> ids, @Param("nuevo") Pedido.EstadoPedido nuevo,
+                            @Param("permitidos") Collection<Pedido.EstadoPedido> permitidos);
+    
+    // Varios pedidos con sus detalles en una sola consulta
+    @Query("SELECT DISTINCT p FROM Pedido p LEFT JOIN FETCH p.detalles WHERE p.id IN :ids")
+    List<Pedido> findConDetallesByIds(@Param("ids") Collection<Long> ids);
+    
+    // Mover los pedidos sin facturar de una mesa a otra
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Pedido p SET p.mesa = :destino, p.mesaId = :destinoId, p.version = p.version + 1 " +
+           "WHERE p.mesa = :origen AND p.facturado = false")
+    int transferirAbiertos(@Param("origen") String origen, @Param("destino") String destino,
+                           @Param("destinoId") Long destinoId);
+    
+    // Al renombrar una mesa sus pedidos abiertos pasan al nombre nuevo; los cerrados conservan el anterior
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Pedido p SET p.mesa = :nombre, p.version = p.version + 1 WHERE p.mesaId = :mesaId AND p.facturado = false")
+    int renombrarMesaAbiertos(@Param("mesaId") Long mesaId, @Param("nombre") String nombre);
+    
+    // Pasar todas las líneas de varios pedidos a otro.
+    // Las consultas nativas declaran su tabla para no vaciar toda la caché de segundo nivel
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "detalle_pedido"))
+    @Query(value = "UPDATE detalle_pedido SET pedido_id = :destino WHERE pedido_id IN (:origenes)", nativeQuery = true)
+    int moverDetalles(@Param("destino") Long destino, @Param("origenes") Collection<Long> origenes);
+    
+    // Pasar líneas concretas de un pedido a otro
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "detalle_pedido"))
+    @Query(value = "UPDATE detalle_pedido SET pedido_id = :destino WHERE id IN (:detalles) AND pedido_id = :origen", nativeQuery = true)
+    int moverDetallesSeleccionados(@Param("origen") Long origen, @Param("destino") Long destino,
+                                   @Param("detalles") Collection<Long> detalles);
+    
+    // Recalcular el total de varios pedidos a partir de sus líneas no canceladas
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "pedido"))
+    @Query(value = "UPDATE pedido p SET p.total_centimos = (SELECT COALESCE(SUM(d.precio_centimos * d.cantidad), 0) FROM detalle_pedido d " +
+                   "WHERE d.pedido_id = p.id AND (d.estado IS NULL OR d.estado <> 'CANCELADO')), p.version = p.version + 1 " +
+                   "WHERE p.id IN (:ids)", nativeQuery = true)
+    int recalcularTotales(@Param("ids") Collection<Long> ids);
+    
+    // Número de líneas de un pedido
+    @Query("SELECT COUNT(d) FROM DetallePedido d WHERE d.pedido.id = :id")
+    long contarDetalles(@Param("id") Long id);
 }
 
+
+
+
+
     
@@ -2,9 +2,27 @@ package com.puntomarisco.backend.repository;
 
 
 
+import java.util.List;
+
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import com.puntomarisco.backend.model.Plato;
 
+import jakarta.persistence.QueryHint;
+
 public interface PlatoRepository extends JpaRepository<Plato, Long> {
+
+    // La carta sale de la caché de consultas mientras la tabla no cambie
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Override
+    List<Plato> findAll();
+
+    // ID de un plato por nombre (el más antiguo si hay nombres repetidos)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT MIN(p.id) FROM Plato p WHERE p.nombre = :nombre")
+    Long findIdByNombre(@Param("nombre") String nombre);
 }
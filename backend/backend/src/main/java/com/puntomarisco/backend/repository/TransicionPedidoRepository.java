@@ -0,0 +1,15 @@
+package com.puntomarisco.backend.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.puntomarisco.backend.model.TransicionPedido;
+
+@Repository
+public interface TransicionPedidoRepository extends JpaRepository<TransicionPedido, Long> {
+
+    // Historial de estados de un pedido en orden cronológico
+    List<TransicionPedido> findByPedidoIdOrderByFechaAsc(Long pedidoId);
+}
@@ -1,8 +1,14 @@
 package com.puntomarisco.backend.repository;
 
 import com.puntomarisco.backend.model.Usuario;
+
+import jakarta.persistence.QueryHint;
+
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -17,6 +23,7 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
      * Buscar usuario por email (para login)
      * Usa parámetros nombrados para prevenir inyección SQL
      */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     @Query("SELECT u FROM Usuario u WHERE u.email = :email AND u.activo = true")
     Optional<Usuario> findByEmailAndActivoTrue(@Param("email") String email);
     
@@ -36,6 +43,7 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
     /**
      * Obtener todos los usuarios activos
      */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     @Query("SELECT u FROM Usuario u WHERE u.activo = true ORDER BY u.fechaCreacion DESC")
     List<Usuario> findAllActiveUsers();
     
@@ -54,6 +62,7 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
     /**
      * Actualizar último acceso del usuario
      */
+    @Modifying
     @Query("UPDATE Usuario u SET u.ultimoAcceso = :fechaAcceso WHERE u.id = :id")
     void updateUltimoAcceso(@Param("id") Long id, @Param("fechaAcceso") LocalDateTime fechaAcceso);
     
@@ -73,6 +82,7 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
     /**
      * Activar/desactivar usuario
      */
+    @Modifying
     @Query("UPDATE Usuario u SET u.activo = :activo, u.fechaActualizacion = :fechaActualizacion WHERE u.id = :id")
     void updateActivoById(@Param("id") Long id, @Param("activo") Boolean activo, @Param("fechaActualizacion") LocalDateTime fechaActualizacion);
 }
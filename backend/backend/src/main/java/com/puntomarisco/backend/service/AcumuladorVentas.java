@@ -0,0 +1,123 @@
+package com.puntomarisco.backend.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.puntomarisco.backend.model.Pedido;
+
+/**
+ * Acumulador de ventas de un bloque del reporte histórico.
+ * Usa arreglos primitivos indexados por ordinal/hora para no crear objetos por fila;
+ * solo el mapa de platos crece, y está acotado por el tamaño de la carta.
+ * Los importes se suman en céntimos enteros, así el total no depende del orden de los bloques.
+ */
+public class AcumuladorVentas {
+
+    private static final Pedido.EstadoPedido[] ESTADOS = Pedido.EstadoPedido.values();
+    private static final Pedido.MetodoPago[] METODOS = Pedido.MetodoPago.values();
+
+    private long pedidos;
+    private long pedidosFacturados;
+    private long totalVentas;
+    private final long[] pedidosPorEstado = new long[ESTADOS.length];
+    // La última posición acumula los pedidos facturados sin método de pago
+    private final long[] ventasPorMetodo = new long[METODOS.length + 1];
+    private final long[] pedidosPorHora = new long[24];
+    private final long[] ventasPorHora = new long[24];
+    // plato -> [cantidad, importe en céntimos]
+    private final Map<String, long[]> platos = new HashMap<>();
+
+    public void registrarPedido(Pedido.EstadoPedido estado, int hora, long totalCentimos, boolean facturado,
+                                Pedido.MetodoPago metodoPago) {
+        pedidos++;
+        if (estado != null) {
+            pedidosPorEstado[estado.ordinal()]++;
+        }
+        pedidosPorHora[hora]++;
+        if (facturado) {
+            pedidosFacturados++;
+            totalVentas += totalCentimos;
+            ventasPorHora[hora] += totalCentimos;
+            ventasPorMetodo[metodoPago != null ? metodoPago.ordinal() : METODOS.length] += totalCentimos;
+        }
+    }
+
+    public void registrarDetalle(String plato, int cantidad, long precioCentimos) {
+        long[] acumulado = platos.computeIfAbsent(plato != null ? plato : "(sin nombre)", k -> new long[2]);
+        acumulado[0] += cantidad;
+        acumulado[1] += precioCentimos * cantidad;
+    }
+
+    public void combinar(AcumuladorVentas otro) {
+        pedidos += otro.pedidos;
+        pedidosFacturados += otro.pedidosFacturados;
+        totalVentas += otro.totalVentas;
+        for (int i = 0; i < pedidosPorEstado.length; i++) {
+            pedidosPorEstado[i] += otro.pedidosPorEstado[i];
+        }
+        for (int i = 0; i < ventasPorMetodo.length; i++) {
+            ventasPorMetodo[i] += otro.ventasPorMetodo[i];
+        }
+        for (int h = 0; h < 24; h++) {
+            pedidosPorHora[h] += otro.pedidosPorHora[h];
+            ventasPorHora[h] += otro.ventasPorHora[h];
+        }
+        otro.platos.forEach((plato, valores) -> {
+            long[] acumulado = platos.computeIfAbsent(plato, k -> new long[2]);
+            acumulado[0] += valores[0];
+            acumulado[1] += valores[1];
+        });
+    }
+
+    public Map<String, Object> aMapa() {
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("pedidos", pedidos);
+        resultado.put("pedidosFacturados", pedidosFacturados);
+        resultado.put("totalVentas", soles(totalVentas));
+        resultado.put("ticketPromedio", pedidosFacturados > 0
+                ? Math.round((double) totalVentas / pedidosFacturados) / 100.0 : 0.0);
+
+        Map<String, Long> porEstado = new LinkedHashMap<>();
+        for (Pedido.EstadoPedido estado : ESTADOS) {
+            porEstado.put(estado.name(), pedidosPorEstado[estado.ordinal()]);
+        }
+        resultado.put("pedidosPorEstado", porEstado);
+
+        Map<String, Double> porMetodo = new LinkedHashMap<>();
+        for (Pedido.MetodoPago metodo : METODOS) {
+            porMetodo.put(metodo.name(), soles(ventasPorMetodo[metodo.ordinal()]));
+        }
+        porMetodo.put("SIN_METODO", soles(ventasPorMetodo[METODOS.length]));
+        resultado.put("ventasPorMetodoPago", porMetodo);
+
+        List<Map<String, Object>> porHora = new ArrayList<>(24);
+        for (int h = 0; h < 24; h++) {
+            Map<String, Object> fila = new LinkedHashMap<>();
+            fila.put("hora", h);
+            fila.put("pedidos", pedidosPorHora[h]);
+            fila.put("ventas", soles(ventasPorHora[h]));
+            porHora.add(fila);
+        }
+        resultado.put("ventasPorHora", porHora);
+
+        List<Map<String, Object>> porPlato = new ArrayList<>(platos.size());
+        platos.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]))
+                .forEach(e -> {
+                    Map<String, Object> fila = new LinkedHashMap<>();
+                    fila.put("plato", e.getKey());
+                    fila.put("cantidad", e.getValue()[0]);
+                    fila.put("importe", soles(e.getValue()[1]));
+                    porPlato.add(fila);
+                });
+        resultado.put("platos", porPlato);
+        return resultado;
+    }
+
+    private static double soles(long centimos) {
+        return centimos / 100.0;
+    }
+}
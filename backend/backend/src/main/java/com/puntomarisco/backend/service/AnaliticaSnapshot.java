@@ -0,0 +1,506 @@
+package com.puntomarisco.backend.service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.puntomarisco.backend.model.DetallePedido;
+import com.puntomarisco.backend.model.Pedido;
+
+/**
+ * Snapshot columnar en memoria del historial de pedidos facturados, para analítica ad-hoc.
+ * Cada línea de detalle facturada ocupa una posición en arreglos primitivos (hora, céntimos, cantidad)
+ * y mesa/plato/método de pago se guardan codificados por diccionario.
+ * Se construye al arrancar (si está habilitado) y se amplía cada vez que se factura un pedido.
+ * Si la construcción falla se reintenta con espera creciente; agotados los intentos el snapshot
+ * queda descartado hasta reiniciar y deja de acumular facturaciones.
+ */
+@Service
+public class AnaliticaSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnaliticaSnapshot.class);
+
+    private static final String SQL_LINEAS_FACTURADAS =
+            "SELECT p.id, p.hora, p.mesa, p.metodo_pago, d.plato, d.cantidad, d.precio_centimos " +
+            "FROM %1$s p JOIN %2$s d ON d.pedido_id = p.id " +
+            "WHERE p.facturado = true AND (d.estado IS NULL OR d.estado <> 'CANCELADO') ORDER BY p.id";
+
+    private static final Pedido.MetodoPago[] METODOS = Pedido.MetodoPago.values();
+
+    private static final long ESPERA_MAXIMA_MS = 5 * 60_000L;
+
+    public enum Dimension {
+        NINGUNA,
+        HORA,
+        DIA_SEMANA,
+        HORA_SEMANA,
+        MESA,
+        PLATO,
+        METODO_PAGO
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ArchivoPedidosService archivoPedidosService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${analitica.snapshot.habilitado:false}")
+    private boolean habilitado;
+
+    @Value("${analitica.snapshot.intentos:5}")
+    private int intentos;
+
+    @Value("${analitica.snapshot.espera-inicial-ms:5000}")
+    private long esperaInicialMs;
+
+    private final ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+    private final DiccionarioValores mesas = new DiccionarioValores();
+    private final DiccionarioValores platos = new DiccionarioValores();
+    private final List<LineaFacturada> pendientes = new ArrayList<>();
+    private Columnas columnas = new Columnas(0);
+    private volatile boolean listo;
+    private volatile boolean descartado;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void construirAlIniciar() {
+        if (!habilitado) {
+            return;
+        }
+        Thread hilo = new Thread(this::construir, "analitica-snapshot");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    private void construir() {
+        long espera = esperaInicialMs;
+        for (int intento = 1; ; intento++) {
+            try {
+                construirSnapshot();
+                return;
+            } catch (Exception e) {
+                if (intento >= intentos) {
+                    descartar(e);
+                    return;
+                }
+                logger.warn("Error al construir snapshot analítico (intento {} de {}), se reintentará en {} ms: {}",
+                        intento, intentos, espera, e.getMessage());
+            }
+            try {
+                Thread.sleep(espera);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                descartar(e);
+                return;
+            }
+            espera = Math.min(espera * 2, ESPERA_MAXIMA_MS);
+        }
+    }
+
+    private void construirSnapshot() {
+        long inicio = System.nanoTime();
+        // pedido y pedido_archivo se leen con la misma vista: un archivado en curso no duplica ni pierde filas
+        TransactionTemplate lectura = new TransactionTemplate(transactionManager);
+        lectura.setReadOnly(true);
+        lectura.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        // Los diccionarios solo los toca este hilo hasta que el snapshot se publica bajo el candado
+        Columnas nuevas = lectura.execute(status -> leerLineasFacturadas());
+
+        candado.writeLock().lock();
+        try {
+            Columnas publicadas = nuevas;
+            if (!pendientes.isEmpty()) {
+                // Pedidos facturados durante la construcción: se descartan sus filas leídas y se usan las pendientes
+                Set<Long> ids = new HashSet<>();
+                for (LineaFacturada linea : pendientes) {
+                    ids.add(linea.pedidoId);
+                }
+                publicadas = nuevas.sinPedidos(ids);
+                for (LineaFacturada linea : pendientes) {
+                    agregarLinea(publicadas, linea);
+                }
+                pendientes.clear();
+            }
+            columnas = publicadas;
+            listo = true;
+        } finally {
+            candado.writeLock().unlock();
+        }
+        logger.info("Snapshot analítico construido: {} líneas en {} ms",
+                columnas.tamano, (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    // Sin snapshot no tiene sentido seguir acumulando facturaciones pendientes
+    private void descartar(Exception causa) {
+        candado.writeLock().lock();
+        try {
+            descartado = true;
+            pendientes.clear();
+        } finally {
+            candado.writeLock().unlock();
+        }
+        logger.error("Snapshot analítico descartado hasta el próximo arranque: {}", causa.getMessage(), causa);
+    }
+
+    private Columnas leerLineasFacturadas() {
+        Columnas nuevas = new Columnas(64 * 1024);
+        for (ArchivoPedidosService.Tablas tablas : archivoPedidosService.tablasConsulta()) {
+            String sql = String.format(SQL_LINEAS_FACTURADAS, tablas.pedido, tablas.detalle);
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(Integer.MIN_VALUE);
+                return ps;
+            }, (RowCallbackHandler) rs -> {
+                int cantidad = rs.getInt("cantidad");
+                Timestamp hora = rs.getTimestamp("hora");
+                nuevas.agregar(
+                        rs.getLong("id"),
+                        hora != null ? segundos(hora.toLocalDateTime()) : 0L,
+                        rs.getLong("precio_centimos") * cantidad,
+                        cantidad,
+                        mesas.codificar(rs.getString("mesa")),
+                        platos.codificar(rs.getString("plato")),
+                        codificarMetodo(rs.getString("metodo_pago")));
+            });
+        }
+        return nuevas;
+    }
+
+    /**
+     * Agrega al snapshot las líneas de un pedido recién facturado.
+     * Si hay una transacción activa se espera a su commit para no incluir facturaciones revertidas.
+     */
+    public void registrarFacturado(Pedido pedido) {
+        if (!habilitado || descartado || pedido == null || pedido.getDetalles() == null) {
+            return;
+        }
+        List<LineaFacturada> lineas = new ArrayList<>(pedido.getDetalles().size());
+        long segundos = pedido.getHora() != null ? segundos(pedido.getHora()) : 0L;
+        for (DetallePedido detalle : pedido.getDetalles()) {
+            if (detalle.getEstado() == DetallePedido.EstadoDetalle.CANCELADO) {
+                continue;
+            }
+            int cantidad = detalle.getCantidad() != null ? detalle.getCantidad() : 0;
+            lineas.add(new LineaFacturada(pedido.getId(), segundos, detalle.subtotalCentimos(), cantidad,
+                    pedido.getMesa(), detalle.getPlato(), pedido.getMetodoPago()));
+        }
+        if (lineas.isEmpty()) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    agregar(lineas);
+                }
+            });
+        } else {
+            agregar(lineas);
+        }
+    }
+
+    private void agregar(List<LineaFacturada> lineas) {
+        candado.writeLock().lock();
+        try {
+            if (descartado) {
+                return;
+            }
+            if (!listo) {
+                pendientes.addAll(lineas);
+                return;
+            }
+            lineas.forEach(l -> agregarLinea(columnas, l));
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    private void agregarLinea(Columnas destino, LineaFacturada linea) {
+        destino.agregar(linea.pedidoId, linea.segundos, linea.centimos, linea.cantidad,
+                mesas.codificar(linea.mesa), platos.codificar(linea.plato),
+                linea.metodo != null ? (byte) linea.metodo.ordinal() : (byte) DiccionarioValores.SIN_VALOR);
+    }
+
+    public boolean isDisponible() {
+        return habilitado && listo;
+    }
+
+    public Map<String, Object> obtenerEstado() {
+        Map<String, Object> estado = new LinkedHashMap<>();
+        estado.put("habilitado", habilitado);
+        estado.put("listo", listo);
+        estado.put("descartado", descartado);
+        candado.readLock().lock();
+        try {
+            estado.put("lineas", columnas.tamano);
+            estado.put("mesas", mesas.tamano());
+            estado.put("platos", platos.tamano());
+        } finally {
+            candado.readLock().unlock();
+        }
+        return estado;
+    }
+
+    /**
+     * Filtra, agrupa y agrega las líneas facturadas.
+     * Por cada grupo devuelve líneas, cantidad, importe, pedidos distintos y ticket promedio.
+     */
+    public List<Map<String, Object>> consultar(Dimension agrupar, LocalDateTime desde, LocalDateTime hasta,
+                                               String mesa, String plato, String metodoPago) {
+        if (!isDisponible()) {
+            throw new IllegalStateException("El snapshot analítico no está disponible");
+        }
+        Dimension dimension = agrupar != null ? agrupar : Dimension.NINGUNA;
+        long desdeSeg = desde != null ? segundos(desde) : Long.MIN_VALUE;
+        long hastaSeg = hasta != null ? segundos(hasta) : Long.MAX_VALUE;
+
+        candado.readLock().lock();
+        try {
+            Columnas c = columnas;
+            int filtroMesa = mesa != null ? mesas.buscar(mesa) : DiccionarioValores.SIN_VALOR;
+            int filtroPlato = plato != null ? platos.buscar(plato) : DiccionarioValores.SIN_VALOR;
+            int filtroMetodo = metodoPago != null ? codificarMetodo(metodoPago.toUpperCase()) : DiccionarioValores.SIN_VALOR;
+            if ((mesa != null && filtroMesa < 0) || (plato != null && filtroPlato < 0)
+                    || (metodoPago != null && filtroMetodo < 0)) {
+                return List.of();
+            }
+
+            // La última posición de cada arreglo agrupa las filas sin valor en la dimensión
+            int grupos = cardinalidad(dimension) + 1;
+            long[] lineas = new long[grupos];
+            long[] cantidad = new long[grupos];
+            long[] importe = new long[grupos];
+            long[] pedidos = new long[grupos];
+            long[] ultimoPedido = new long[grupos];
+            Arrays.fill(ultimoPedido, Long.MIN_VALUE);
+
+            for (int i = 0; i < c.tamano; i++) {
+                long seg = c.segundos[i];
+                if (seg < desdeSeg || seg >= hastaSeg
+                        || (filtroMesa >= 0 && c.mesas[i] != filtroMesa)
+                        || (filtroPlato >= 0 && c.platos[i] != filtroPlato)
+                        || (filtroMetodo >= 0 && c.metodos[i] != filtroMetodo)) {
+                    continue;
+                }
+                int g = grupo(dimension, c, i);
+                if (g < 0) {
+                    g = grupos - 1;
+                }
+                lineas[g]++;
+                cantidad[g] += c.cantidades[i];
+                importe[g] += c.centimos[i];
+                // Las líneas de un mismo pedido son contiguas, basta comparar con el último visto
+                if (ultimoPedido[g] != c.pedidoIds[i]) {
+                    ultimoPedido[g] = c.pedidoIds[i];
+                    pedidos[g]++;
+                }
+            }
+
+            List<Map<String, Object>> resultado = new ArrayList<>();
+            for (int g = 0; g < grupos; g++) {
+                if (lineas[g] == 0) {
+                    continue;
+                }
+                Map<String, Object> fila = new LinkedHashMap<>();
+                fila.put("grupo", g == grupos - 1 ? null : etiqueta(dimension, g));
+                fila.put("lineas", lineas[g]);
+                fila.put("cantidad", cantidad[g]);
+                fila.put("importe", importe[g] / 100.0);
+                fila.put("pedidos", pedidos[g]);
+                fila.put("ticketPromedio", pedidos[g] > 0 ? Math.round((double) importe[g] / pedidos[g]) / 100.0 : 0.0);
+                resultado.add(fila);
+            }
+            return resultado;
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    private int cardinalidad(Dimension dimension) {
+        switch (dimension) {
+            case HORA:
+                return 24;
+            case DIA_SEMANA:
+                return 7;
+            case HORA_SEMANA:
+                return 7 * 24;
+            case MESA:
+                return mesas.tamano();
+            case PLATO:
+                return platos.tamano();
+            case METODO_PAGO:
+                return METODOS.length;
+            default:
+                return 1;
+        }
+    }
+
+    private static int grupo(Dimension dimension, Columnas c, int i) {
+        switch (dimension) {
+            case HORA:
+                return hora(c.segundos[i]);
+            case DIA_SEMANA:
+                return diaSemana(c.segundos[i]);
+            case HORA_SEMANA:
+                return diaSemana(c.segundos[i]) * 24 + hora(c.segundos[i]);
+            case MESA:
+                return c.mesas[i];
+            case PLATO:
+                return c.platos[i];
+            case METODO_PAGO:
+                return c.metodos[i];
+            default:
+                return 0;
+        }
+    }
+
+    private Object etiqueta(Dimension dimension, int g) {
+        switch (dimension) {
+            case HORA:
+                return g;
+            case DIA_SEMANA:
+                return DayOfWeek.of(g + 1).name();
+            case HORA_SEMANA:
+                return DayOfWeek.of(g / 24 + 1).name() + " " + (g % 24) + "h";
+            case MESA:
+                return mesas.valor(g);
+            case PLATO:
+                return platos.valor(g);
+            case METODO_PAGO:
+                return METODOS[g].name();
+            default:
+                return "TOTAL";
+        }
+    }
+
+    // Las horas se guardan como segundos "locales" (LocalDateTime tratado como UTC)
+    private static long segundos(LocalDateTime hora) {
+        return hora.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static int hora(long segundos) {
+        return (int) (Math.floorMod(segundos, 86_400L) / 3600);
+    }
+
+    // 1970-01-01 fue jueves: se desplaza para que lunes sea 0
+    private static int diaSemana(long segundos) {
+        return (int) Math.floorMod(Math.floorDiv(segundos, 86_400L) + 3, 7L);
+    }
+
+    private static byte codificarMetodo(String metodo) {
+        if (metodo == null) {
+            return (byte) DiccionarioValores.SIN_VALOR;
+        }
+        try {
+            return (byte) Pedido.MetodoPago.valueOf(metodo).ordinal();
+        } catch (IllegalArgumentException e) {
+            return (byte) DiccionarioValores.SIN_VALOR;
+        }
+    }
+
+    private static final class LineaFacturada {
+        final long pedidoId;
+        final long segundos;
+        final long centimos;
+        final int cantidad;
+        final String mesa;
+        final String plato;
+        final Pedido.MetodoPago metodo;
+
+        LineaFacturada(long pedidoId, long segundos, long centimos, int cantidad,
+                       String mesa, String plato, Pedido.MetodoPago metodo) {
+            this.pedidoId = pedidoId;
+            this.segundos = segundos;
+            this.centimos = centimos;
+            this.cantidad = cantidad;
+            this.mesa = mesa;
+            this.plato = plato;
+            this.metodo = metodo;
+        }
+    }
+
+    /**
+     * Arreglos paralelos del snapshot; crecen un 50% cuando se llenan
+     */
+    private static final class Columnas {
+        long[] pedidoIds;
+        long[] segundos;
+        long[] centimos;
+        int[] cantidades;
+        int[] mesas;
+        int[] platos;
+        byte[] metodos;
+        int tamano;
+
+        Columnas(int capacidad) {
+            pedidoIds = new long[capacidad];
+            segundos = new long[capacidad];
+            centimos = new long[capacidad];
+            cantidades = new int[capacidad];
+            mesas = new int[capacidad];
+            platos = new int[capacidad];
+            metodos = new byte[capacidad];
+        }
+
+        void agregar(long pedidoId, long seg, long cent, int cantidad, int mesa, int plato, byte metodo) {
+            if (tamano == pedidoIds.length) {
+                int capacidad = Math.max(1024, tamano + (tamano >> 1));
+                pedidoIds = Arrays.copyOf(pedidoIds, capacidad);
+                segundos = Arrays.copyOf(segundos, capacidad);
+                centimos = Arrays.copyOf(centimos, capacidad);
+                cantidades = Arrays.copyOf(cantidades, capacidad);
+                mesas = Arrays.copyOf(mesas, capacidad);
+                platos = Arrays.copyOf(platos, capacidad);
+                metodos = Arrays.copyOf(metodos, capacidad);
+            }
+            pedidoIds[tamano] = pedidoId;
+            segundos[tamano] = seg;
+            centimos[tamano] = cent;
+            cantidades[tamano] = cantidad;
+            mesas[tamano] = mesa;
+            platos[tamano] = plato;
+            metodos[tamano] = metodo;
+            tamano++;
+        }
+
+        Columnas sinPedidos(Set<Long> excluidos) {
+            Columnas filtradas = new Columnas(tamano);
+            for (int i = 0; i < tamano; i++) {
+                if (!excluidos.contains(pedidoIds[i])) {
+                    filtradas.agregar(pedidoIds[i], segundos[i], centimos[i], cantidades[i], mesas[i], platos[i], metodos[i]);
+                }
+            }
+            return filtradas;
+        }
+    }
+}
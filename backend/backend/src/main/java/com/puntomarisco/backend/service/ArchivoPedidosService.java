@@ -0,0 +1,283 @@
+package com.puntomarisco.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Archivado de pedidos cerrados (FACTURADO o CANCELADO) más antiguos que una edad configurable.
+ * Los mueve por lotes pequeños, con pausa entre lotes, a pedido_archivo y detalle_pedido_archivo,
+ * de modo que las tablas operativas (y sus índices) solo contengan el trabajo vivo.
+ * Opcionalmente la tabla de archivo se particiona por rango de año sobre hora.
+ */
+@Service
+public class ArchivoPedidosService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchivoPedidosService.class);
+
+    public static final String TABLA_PEDIDO = "pedido";
+    public static final String TABLA_DETALLE = "detalle_pedido";
+    public static final String TABLA_PEDIDO_ARCHIVO = "pedido_archivo";
+    public static final String TABLA_DETALLE_ARCHIVO = "detalle_pedido_archivo";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${archivo.habilitado:false}")
+    private boolean habilitado;
+
+    @Value("${archivo.dias-antiguedad:90}")
+    private int diasAntiguedad;
+
+    @Value("${archivo.lote:200}")
+    private int tamanoLote;
+
+    @Value("${archivo.pausa-ms:250}")
+    private long pausaMs;
+
+    @Value("${archivo.particionado:false}")
+    private boolean particionado;
+
+    private final AtomicBoolean enEjecucion = new AtomicBoolean();
+    // Ejecuciones manuales: fuera del hilo de la petición, de una en una
+    private final ExecutorService ejecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "archivo-pedidos");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+    private volatile boolean detenido;
+    private volatile boolean tablasListas;
+    private volatile LocalDateTime ultimaEjecucion;
+    private volatile long pedidosArchivados;
+
+    /**
+     * Par de tablas (pedidos, detalles) donde pueden estar los pedidos
+     */
+    public static final class Tablas {
+        public final String pedido;
+        public final String detalle;
+
+        Tablas(String pedido, String detalle) {
+            this.pedido = pedido;
+            this.detalle = detalle;
+        }
+    }
+
+    // Antes que otros procesos de arranque que leen el historial
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void prepararTablas() {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            boolean nueva = !existeTabla(TABLA_PEDIDO_ARCHIVO);
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLA_PEDIDO_ARCHIVO + " LIKE " + TABLA_PEDIDO);
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLA_DETALLE_ARCHIVO + " LIKE " + TABLA_DETALLE);
+            if (nueva && particionado) {
+                particionarArchivo();
+            }
+            tablasListas = true;
+            logger.info("Tablas de archivo de pedidos listas (particionado: {})", particionado);
+        } catch (Exception e) {
+            logger.error("Error al preparar tablas de archivo: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        detenido = true;
+        ejecutor.shutdownNow();
+    }
+
+    /**
+     * Tablas a consultar para lecturas históricas: siempre las operativas y, si existe, el archivo
+     */
+    public List<Tablas> tablasConsulta() {
+        List<Tablas> tablas = new ArrayList<>(2);
+        tablas.add(new Tablas(TABLA_PEDIDO, TABLA_DETALLE));
+        if (tablasListas) {
+            tablas.add(new Tablas(TABLA_PEDIDO_ARCHIVO, TABLA_DETALLE_ARCHIVO));
+        }
+        return tablas;
+    }
+
+    @Scheduled(cron = "${archivo.cron:0 30 4 * * *}")
+    public void archivarProgramado() {
+        if (habilitado && tablasListas) {
+            archivar();
+        }
+    }
+
+    /**
+     * Lanza el archivado en segundo plano; el progreso se consulta con obtenerEstado
+     * @return false si ya había un archivado en ejecución
+     * @throws IllegalStateException Si el archivo de pedidos no está habilitado
+     */
+    public boolean iniciarArchivado() {
+        if (!tablasListas) {
+            throw new IllegalStateException("El archivo de pedidos no está habilitado");
+        }
+        if (enEjecucion.get()) {
+            return false;
+        }
+        ejecutor.execute(this::archivar);
+        return true;
+    }
+
+    /**
+     * Mueve al archivo los pedidos cerrados más antiguos que la edad configurada
+     * @return Número de pedidos archivados en esta ejecución
+     */
+    public long archivar() {
+        if (!tablasListas) {
+            throw new IllegalStateException("El archivo de pedidos no está habilitado");
+        }
+        if (!enEjecucion.compareAndSet(false, true)) {
+            logger.info("Archivado de pedidos ya en ejecución");
+            return 0;
+        }
+        long archivados = 0;
+        try {
+            LocalDateTime limite = LocalDateTime.now().minusDays(diasAntiguedad);
+            List<String> columnasPedido = sincronizarColumnas(TABLA_PEDIDO, TABLA_PEDIDO_ARCHIVO);
+            List<String> columnasDetalle = sincronizarColumnas(TABLA_DETALLE, TABLA_DETALLE_ARCHIVO);
+            String listaPedido = String.join(", ", columnasPedido);
+            String listaDetalle = String.join(", ", columnasDetalle);
+            logger.info("Archivando pedidos cerrados anteriores a {}", limite);
+
+            while (!detenido) {
+                List<Long> ids = jdbcTemplate.queryForList(
+                        "SELECT id FROM " + TABLA_PEDIDO + " WHERE estado IN ('FACTURADO', 'CANCELADO') AND hora < ? " +
+                        "ORDER BY id LIMIT ?", Long.class, limite, tamanoLote);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+                transactionTemplate.executeWithoutResult(status -> {
+                    namedJdbcTemplate.update("INSERT INTO " + TABLA_PEDIDO_ARCHIVO + " (" + listaPedido + ") SELECT "
+                            + listaPedido + " FROM " + TABLA_PEDIDO + " WHERE id IN (:ids)", params);
+                    namedJdbcTemplate.update("INSERT INTO " + TABLA_DETALLE_ARCHIVO + " (" + listaDetalle + ") SELECT "
+                            + listaDetalle + " FROM " + TABLA_DETALLE + " WHERE pedido_id IN (:ids)", params);
+                    namedJdbcTemplate.update("DELETE FROM " + TABLA_DETALLE + " WHERE pedido_id IN (:ids)", params);
+                    namedJdbcTemplate.update("DELETE FROM " + TABLA_PEDIDO + " WHERE id IN (:ids)", params);
+                });
+                archivados += ids.size();
+                logger.debug("Lote de {} pedidos archivado", ids.size());
+
+                if (ids.size() < tamanoLote) {
+                    break;
+                }
+                // Pausa entre lotes para no competir con el tráfico operativo
+                Thread.sleep(pausaMs);
+            }
+            logger.info("Archivado completado: {} pedidos movidos", archivados);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Archivado de pedidos interrumpido tras {} pedidos", archivados);
+        } catch (Exception e) {
+            logger.error("Error durante el archivado de pedidos: {}", e.getMessage(), e);
+        } finally {
+            pedidosArchivados += archivados;
+            ultimaEjecucion = LocalDateTime.now();
+            enEjecucion.set(false);
+        }
+        return archivados;
+    }
+
+    public Map<String, Object> obtenerEstado() {
+        Map<String, Object> estado = new LinkedHashMap<>();
+        estado.put("habilitado", habilitado);
+        estado.put("tablasListas", tablasListas);
+        estado.put("particionado", particionado);
+        estado.put("diasAntiguedad", diasAntiguedad);
+        estado.put("enEjecucion", enEjecucion.get());
+        estado.put("ultimaEjecucion", ultimaEjecucion);
+        estado.put("pedidosArchivados", pedidosArchivados);
+        return estado;
+    }
+
+    /**
+     * Añade al archivo las columnas que el esquema operativo haya ganado (ddl-auto=update)
+     * y devuelve la lista de columnas a copiar, en el orden de la tabla operativa.
+     */
+    private List<String> sincronizarColumnas(String tablaOrigen, String tablaArchivo) {
+        List<Map<String, Object>> origen = columnas(tablaOrigen);
+        List<String> existentes = new ArrayList<>();
+        columnas(tablaArchivo).forEach(c -> existentes.add((String) c.get("COLUMN_NAME")));
+
+        List<String> lista = new ArrayList<>();
+        for (Map<String, Object> columna : origen) {
+            String nombre = (String) columna.get("COLUMN_NAME");
+            if (!existentes.contains(nombre)) {
+                logger.info("Añadiendo columna {} a {}", nombre, tablaArchivo);
+                jdbcTemplate.execute("ALTER TABLE " + tablaArchivo + " ADD COLUMN `" + nombre + "` "
+                        + columna.get("COLUMN_TYPE") + " NULL");
+            }
+            lista.add("`" + nombre + "`");
+        }
+        return lista;
+    }
+
+    private List<Map<String, Object>> columnas(String tabla) {
+        return jdbcTemplate.queryForList(
+                "SELECT COLUMN_NAME, COLUMN_TYPE FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? ORDER BY ORDINAL_POSITION", tabla);
+    }
+
+    private boolean existeTabla(String tabla) {
+        Integer cantidad = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?",
+                Integer.class, tabla);
+        return cantidad != null && cantidad > 0;
+    }
+
+    /**
+     * Particiona por año la tabla de archivo recién creada. MySQL exige que la columna de
+     * partición forme parte de la clave primaria, por eso la clave pasa a ser (id, hora).
+     */
+    private void particionarArchivo() {
+        String tipoHora = jdbcTemplate.queryForObject(
+                "SELECT COLUMN_TYPE FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() " +
+                "AND TABLE_NAME = ? AND COLUMN_NAME = 'hora'", String.class, TABLA_PEDIDO_ARCHIVO);
+        jdbcTemplate.execute("ALTER TABLE " + TABLA_PEDIDO_ARCHIVO + " MODIFY id BIGINT NOT NULL, MODIFY hora "
+                + tipoHora + " NOT NULL, DROP PRIMARY KEY, ADD PRIMARY KEY (id, hora)");
+
+        int anioActual = LocalDateTime.now().getYear();
+        StringBuilder particiones = new StringBuilder();
+        for (int anio = anioActual - 5; anio <= anioActual + 5; anio++) {
+            particiones.append("PARTITION p").append(anio).append(" VALUES LESS THAN (").append(anio + 1).append("), ");
+        }
+        particiones.append("PARTITION pmax VALUES LESS THAN MAXVALUE");
+        jdbcTemplate.execute("ALTER TABLE " + TABLA_PEDIDO_ARCHIVO + " PARTITION BY RANGE (YEAR(hora)) (" + particiones + ")");
+        logger.info("Tabla {} particionada por año", TABLA_PEDIDO_ARCHIVO);
+    }
+}
@@ -0,0 +1,26 @@
+package com.puntomarisco.backend.service;
+
+/**
+ * Se lanza cuando un intento de login se rechaza sin verificar la contraseña:
+ * por exceso de intentos (límite por email/IP) o porque el pool de BCrypt está saturado.
+ */
+public class AutenticacionSaturadaException extends RuntimeException {
+
+    private final boolean limiteIntentos;
+    private final long reintentarEnSegundos;
+
+    public AutenticacionSaturadaException(String mensaje, boolean limiteIntentos, long reintentarEnSegundos) {
+        super(mensaje);
+        this.limiteIntentos = limiteIntentos;
+        this.reintentarEnSegundos = reintentarEnSegundos;
+    }
+
+    // true: demasiados intentos del cliente (429); false: servidor saturado (503)
+    public boolean isLimiteIntentos() {
+        return limiteIntentos;
+    }
+
+    public long getReintentarEnSegundos() {
+        return reintentarEnSegundos;
+    }
+}
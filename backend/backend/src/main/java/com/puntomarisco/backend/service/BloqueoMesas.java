@@ -0,0 +1,122 @@
+package com.puntomarisco.backend.service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Serializa en el proceso las modificaciones de una misma mesa con un conjunto fijo de locks
+ * (lock striping): dos operaciones sobre la misma mesa se ejecutan una tras otra y las de mesas
+ * distintas avanzan en paralelo salvo colisión de franja. Entre nodos la protección es el
+ * bloqueo optimista (@Version) de Pedido y Mesa.
+ */
+@Service
+public class BloqueoMesas {
+
+    private final ReentrantLock[] franjas;
+    private final long esperaMaximaMs;
+
+    private final LatenciaHistograma esperas = new LatenciaHistograma();
+    private final AtomicLong tiemposAgotados = new AtomicLong();
+
+    public BloqueoMesas(@Value("${pedidos.bloqueo.franjas:64}") int numeroFranjas,
+                        @Value("${pedidos.bloqueo.espera-maxima-ms:10000}") long esperaMaximaMs) {
+        // Potencia de dos para elegir la franja con una máscara
+        int tamano = Integer.highestOneBit(Math.max(1, numeroFranjas - 1)) << 1;
+        this.franjas = new ReentrantLock[tamano];
+        for (int i = 0; i < tamano; i++) {
+            franjas[i] = new ReentrantLock();
+        }
+        this.esperaMaximaMs = esperaMaximaMs;
+    }
+
+    /**
+     * Ejecuta la acción con el lock de la mesa tomado. Es reentrante: una acción puede volver
+     * a pedir la misma mesa sin bloquearse.
+     * @throws MesaOcupadaException Si el lock no se obtiene dentro de la espera máxima
+     */
+    public <T> T ejecutar(String mesa, Supplier<T> accion) {
+        ReentrantLock lock = franja(mesa);
+        adquirir(lock, mesa);
+        try {
+            return accion.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ejecuta la acción con los locks de varias mesas tomados. Las franjas se toman siempre en el
+     * mismo orden (por índice) para que dos operaciones con mesas cruzadas no se bloqueen entre sí.
+     */
+    public <T> T ejecutar(Collection<String> mesas, Supplier<T> accion) {
+        TreeSet<Integer> indices = new TreeSet<>();
+        for (String mesa : mesas) {
+            indices.add(indice(mesa));
+        }
+        int tomados = 0;
+        Integer[] orden = indices.toArray(new Integer[0]);
+        try {
+            for (Integer i : orden) {
+                adquirir(franjas[i], String.valueOf(mesas));
+                tomados++;
+            }
+            return accion.get();
+        } finally {
+            for (int i = tomados - 1; i >= 0; i--) {
+                franjas[orden[i]].unlock();
+            }
+        }
+    }
+
+    private void adquirir(ReentrantLock lock, String mesa) {
+        long inicio = System.nanoTime();
+        try {
+            if (!lock.tryLock(esperaMaximaMs, TimeUnit.MILLISECONDS)) {
+                tiemposAgotados.incrementAndGet();
+                throw new MesaOcupadaException("Mesa ocupada por otra operación", mesa, null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MesaOcupadaException("Espera del lock de mesa interrumpida", mesa, e);
+        }
+        esperas.registrar((System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    private ReentrantLock franja(String mesa) {
+        return franjas[indice(mesa)];
+    }
+
+    private int indice(String mesa) {
+        int h = Objects.hashCode(mesa);
+        h ^= (h >>> 16);
+        return h & (franjas.length - 1);
+    }
+
+    public Map<String, Object> obtenerMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("franjas", franjas.length);
+        int ocupadas = 0;
+        int enEspera = 0;
+        for (ReentrantLock lock : franjas) {
+            if (lock.isLocked()) {
+                ocupadas++;
+            }
+            enEspera += lock.getQueueLength();
+        }
+        metricas.put("franjasOcupadas", ocupadas);
+        metricas.put("hilosEnEspera", enEspera);
+        metricas.put("tiemposAgotados", tiemposAgotados.get());
+        metricas.put("esperaMs", esperas.resumen());
+        return metricas;
+    }
+}
@@ -0,0 +1,59 @@
+package com.puntomarisco.backend.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Aciertos y fallos de la caché de segundo nivel (Mesa, Plato, Usuario) y de la caché de consultas
+ */
+@Service
+public class CacheEntidadesService {
+
+    private static final String[] REGIONES = { "mesas", "platos", "usuarios" };
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    public Map<String, Object> obtenerEstadisticas() {
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("habilitadas", estadisticas.isStatisticsEnabled());
+
+        Map<String, Object> regiones = new LinkedHashMap<>();
+        for (String region : REGIONES) {
+            CacheRegionStatistics datos = estadisticas.getDomainDataRegionStatistics(region);
+            if (datos != null) {
+                regiones.put(region, resumen(datos.getHitCount(), datos.getMissCount(), datos.getPutCount()));
+            }
+        }
+        resultado.put("entidades", regiones);
+        resultado.put("consultas", resumen(estadisticas.getQueryCacheHitCount(),
+                estadisticas.getQueryCacheMissCount(), estadisticas.getQueryCachePutCount()));
+        // Sentencias que sí llegaron a la base de datos, para comparar
+        resultado.put("cargasEntidades", estadisticas.getEntityLoadCount());
+        resultado.put("consultasEjecutadas", estadisticas.getQueryExecutionCount());
+        return resultado;
+    }
+
+    public void vaciar() {
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    private static Map<String, Object> resumen(long aciertos, long fallos, long escrituras) {
+        Map<String, Object> resumen = new LinkedHashMap<>();
+        resumen.put("aciertos", aciertos);
+        resumen.put("fallos", fallos);
+        resumen.put("escrituras", escrituras);
+        long total = aciertos + fallos;
+        resumen.put("tasaAciertos", total > 0 ? Math.round(aciertos * 1000.0 / total) / 10.0 : 0.0);
+        return resumen;
+    }
+}
@@ -0,0 +1,105 @@
+package com.puntomarisco.backend.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.puntomarisco.backend.model.Mesa;
+import com.puntomarisco.backend.model.Plato;
+import com.puntomarisco.backend.repository.MesaRepository;
+import com.puntomarisco.backend.repository.PlatoRepository;
+
+/**
+ * Traducción en memoria de nombre de mesa y de plato a su ID. Se carga al arrancar y cada
+ * nombre desconocido se consulta una vez en la base de datos; los nombres que no existen no
+ * se guardan, así una mesa creada desde otro nodo se encuentra en la siguiente consulta.
+ * Un ID que la base de datos rechaza por clave foránea se olvida y se vuelve a consultar.
+ */
+@Service
+public class CatalogoCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogoCache.class);
+
+    @Autowired
+    private MesaRepository mesaRepository;
+
+    @Autowired
+    private PlatoRepository platoRepository;
+
+    private final Map<String, Long> mesas = new ConcurrentHashMap<>();
+    private final Map<String, Long> platos = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        try {
+            for (Mesa mesa : mesaRepository.findAll()) {
+                if (mesa.getNombre() != null) {
+                    mesas.merge(mesa.getNombre(), mesa.getId(), Math::min);
+                }
+            }
+            for (Plato plato : platoRepository.findAll()) {
+                if (plato.getNombre() != null) {
+                    platos.merge(plato.getNombre(), plato.getId(), Math::min);
+                }
+            }
+            logger.info("Catálogo en memoria: {} mesas, {} platos", mesas.size(), platos.size());
+        } catch (Exception e) {
+            // Sin precarga cada nombre se resuelve en su primera consulta
+            logger.error("Error al cargar el catálogo de mesas y platos: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return ID de la mesa, o null si no existe ninguna con ese nombre
+     */
+    public Long idMesa(String nombre) {
+        return buscar(mesas, nombre, mesaRepository::findIdByNombre);
+    }
+
+    /**
+     * @return ID del plato, o null si no está en la carta
+     */
+    public Long idPlato(String nombre) {
+        return buscar(platos, nombre, platoRepository::findIdByNombre);
+    }
+
+    public void registrarMesa(Mesa mesa) {
+        if (mesa.getNombre() != null && mesa.getId() != null) {
+            mesas.merge(mesa.getNombre(), mesa.getId(), Math::min);
+        }
+    }
+
+    public void olvidarMesa(String nombre) {
+        if (nombre != null) {
+            mesas.remove(nombre);
+        }
+    }
+
+    public void olvidarPlato(String nombre) {
+        if (nombre != null) {
+            platos.remove(nombre);
+        }
+    }
+
+    private Long buscar(Map<String, Long> cache, String nombre, Function<String, Long> consulta) {
+        if (nombre == null) {
+            return null;
+        }
+        Long id = cache.get(nombre);
+        if (id != null) {
+            return id;
+        }
+        id = consulta.apply(nombre);
+        if (id != null) {
+            cache.putIfAbsent(nombre, id);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,86 @@
+package com.puntomarisco.backend.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.puntomarisco.backend.dto.Dashboard;
+import com.puntomarisco.backend.model.EstadoCaja;
+import com.puntomarisco.backend.model.Mesa;
+import com.puntomarisco.backend.model.Pedido;
+import com.puntomarisco.backend.repository.MesaRepository;
+import com.puntomarisco.backend.repository.PedidoRepository;
+
+/**
+ * Arma el tablero con tres lecturas: las mesas (caché de segundo nivel), una consulta agrupada
+ * sobre los pedidos abiertos y del día, y la caja actual
+ */
+@Service
+public class DashboardService {
+
+    @Autowired
+    private MesaRepository mesaRepository;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private EstadoCajaService estadoCajaService;
+
+    public Dashboard obtenerDashboard() {
+        LocalDateTime inicioDia = LocalDate.now().atStartOfDay();
+
+        Map<String, Dashboard.MesaResumen> mesas = new LinkedHashMap<>();
+        for (Mesa mesa : mesaRepository.findAll()) {
+            mesas.putIfAbsent(mesa.getNombre(),
+                    new Dashboard.MesaResumen(mesa.getId(), mesa.getNombre(), mesa.getEstado(), 0, 0, null));
+        }
+
+        Map<Pedido.EstadoPedido, Long> cola = new EnumMap<>(Pedido.EstadoPedido.class);
+        for (Pedido.EstadoPedido estado : Pedido.EstadoPedido.values()) {
+            cola.put(estado, 0L);
+        }
+        Dashboard.ResumenDia dia = new Dashboard.ResumenDia();
+
+        // Fila: mesa, estado, facturado, pedidos, total en céntimos, último ID, pedidos del día
+        for (Object[] fila : pedidoRepository.resumirAbiertosYDelDia(inicioDia)) {
+            String nombre = (String) fila[0];
+            Pedido.EstadoPedido estado = (Pedido.EstadoPedido) fila[1];
+            boolean facturado = Boolean.TRUE.equals(fila[2]);
+            long pedidos = ((Number) fila[3]).longValue();
+            long totalCentimos = ((Number) fila[4]).longValue();
+            Long ultimoId = ((Number) fila[5]).longValue();
+            long delDia = ((Number) fila[6]).longValue();
+
+            if (facturado) {
+                // Solo entran los facturados del día
+                dia.setFacturados(dia.getFacturados() + pedidos);
+                dia.setVentasCentimos(dia.getVentasCentimos() + totalCentimos);
+                continue;
+            }
+            dia.setPendientes(dia.getPendientes() + delDia);
+            if (estado != null) {
+                cola.merge(estado, pedidos, Long::sum);
+            }
+            // Pedidos de una mesa borrada o renombrada desde otro nodo: se muestran igual
+            Dashboard.MesaResumen mesa = mesas.computeIfAbsent(nombre,
+                    n -> new Dashboard.MesaResumen(null, n, null, 0, 0, null));
+            mesa.setPedidosAbiertos(mesa.getPedidosAbiertos() + pedidos);
+            mesa.setTotalCentimos(mesa.getTotalCentimos() + totalCentimos);
+            if (mesa.getUltimoPedidoId() == null || ultimoId > mesa.getUltimoPedidoId()) {
+                mesa.setUltimoPedidoId(ultimoId);
+            }
+        }
+        dia.setPedidos(dia.getFacturados() + dia.getPendientes());
+
+        EstadoCaja caja = estadoCajaService.obtenerCajaActual();
+        return new Dashboard(new ArrayList<>(mesas.values()), cola, dia, caja, LocalDateTime.now());
+    }
+}
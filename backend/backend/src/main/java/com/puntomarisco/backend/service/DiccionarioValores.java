@@ -0,0 +1,49 @@
+package com.puntomarisco.backend.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codificación por diccionario de valores de texto repetidos (mesas, platos, métodos de pago).
+ * No es thread-safe: el acceso se protege con el candado de {@link AnaliticaSnapshot}.
+ */
+public class DiccionarioValores {
+
+    public static final int SIN_VALOR = -1;
+
+    private final Map<String, Integer> codigos = new HashMap<>();
+    private final List<String> valores = new ArrayList<>();
+
+    public int codificar(String valor) {
+        if (valor == null) {
+            return SIN_VALOR;
+        }
+        Integer codigo = codigos.get(valor);
+        if (codigo == null) {
+            codigo = valores.size();
+            valores.add(valor);
+            codigos.put(valor, codigo);
+        }
+        return codigo;
+    }
+
+    /**
+     * Código de un valor ya existente, sin registrarlo
+     */
+    public int buscar(String valor) {
+        if (valor == null) {
+            return SIN_VALOR;
+        }
+        return codigos.getOrDefault(valor, SIN_VALOR);
+    }
+
+    public String valor(int codigo) {
+        return codigo >= 0 && codigo < valores.size() ? valores.get(codigo) : null;
+    }
+
+    public int tamano() {
+        return valores.size();
+    }
+}
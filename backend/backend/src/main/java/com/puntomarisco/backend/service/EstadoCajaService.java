@@ -1,12 +1,18 @@
 package com.puntomarisco.backend.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.puntomarisco.backend.model.Centimos;
 import com.puntomarisco.backend.model.EstadoCaja;
 import com.puntomarisco.backend.repository.EstadoCajaRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
+
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -19,6 +25,25 @@ public class EstadoCajaService {
     @Autowired
     private EstadoCajaRepository estadoCajaRepository;
     
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Value("${lecturas.vigencia-ms:0}")
+    private long vigenciaLecturasMs;
+    
+    // Estado de la caja en JSON, compartido entre las pantallas que lo piden a la vez
+    private LecturaCompartida estado;
+    
+    @PostConstruct
+    public void iniciar() {
+        estado = new LecturaCompartida(() -> LecturaCompartida.json(objectMapper, obtenerCajaActual()),
+                vigenciaLecturasMs);
+    }
+    
+    public byte[] obtenerCajaActualJson() {
+        return estado.obtener();
+    }
+    
     public EstadoCaja obtenerCajaActual() {
         LocalDateTime hoy = LocalDateTime.now();
         Optional<EstadoCaja> cajaHoy = estadoCajaRepository.findByFecha(hoy);
@@ -29,7 +54,26 @@ public class EstadoCajaService {
             // Crear nueva caja para el día
             EstadoCaja nuevaCaja = new EstadoCaja();
             logger.info("Creando nueva caja para el día: {}", hoy.toLocalDate());
-            return estadoCajaRepository.save(nuevaCaja);
+            EstadoCaja guardada = estadoCajaRepository.save(nuevaCaja);
+            estado.invalidar();
+            return guardada;
+        }
+    }
+    
+    /**
+     * Sumar una venta al total de la caja del día con un único UPDATE. Con la caja cerrada
+     * la venta no se suma. Debe llamarse dentro de la transacción que factura.
+     */
+    public void registrarVenta(long centimos) {
+        LocalDateTime inicioDia = LocalDate.now().atStartOfDay();
+        estado.invalidar();
+        if (estadoCajaRepository.sumarVentas(inicioDia, centimos) == 0) {
+            // Primera venta del día: crear la caja y volver a sumar
+            if (obtenerCajaActual().getAbierta()) {
+                estadoCajaRepository.sumarVentas(inicioDia, centimos);
+            } else {
+                logger.warn("Venta de S/ {} facturada con la caja cerrada: no se suma al total", Centimos.aDecimal(centimos));
+            }
         }
     }
     
@@ -38,20 +82,24 @@ public class EstadoCajaService {
         return cajaActual.getAbierta();
     }
     
-    public EstadoCaja cerrarCaja(String observaciones, Double totalVentas) {
+    /**
+     * Cerrar la caja del día. El total de ventas es el acumulado por cada facturación.
+     */
+    public EstadoCaja cerrarCaja(String observaciones) {
         EstadoCaja cajaActual = obtenerCajaActual();
         
         if (!cajaActual.getAbierta()) {
             throw new RuntimeException("La caja ya está cerrada");
         }
         
-        cajaActual.setTotalVentas(totalVentas);
         cajaActual.cerrarCaja(observaciones);
         
         logger.info("Caja cerrada para el día: {} con total: S/ {}", 
-                   cajaActual.getFecha().toLocalDate(), totalVentas);
+                   cajaActual.getFecha().toLocalDate(), cajaActual.getTotalVentas());
         
-        return estadoCajaRepository.save(cajaActual);
+        EstadoCaja guardada = estadoCajaRepository.save(cajaActual);
+        estado.invalidar();
+        return guardada;
     }
     
     public EstadoCaja abrirCaja() {
@@ -68,7 +116,9 @@ public class EstadoCajaService {
         
         logger.info("Caja reabierta para el día: {}", cajaActual.getFecha().toLocalDate());
         
-        return estadoCajaRepository.save(cajaActual);
+        EstadoCaja guardada = estadoCajaRepository.save(cajaActual);
+        estado.invalidar();
+        return guardada;
     }
     
     public List<EstadoCaja> obtenerHistorialCajas() {
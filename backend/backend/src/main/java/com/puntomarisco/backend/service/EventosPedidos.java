@@ -0,0 +1,522 @@
+package com.puntomarisco.backend.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.AnnotationIntrospectorPair;
+import com.fasterxml.jackson.databind.introspect.NopAnnotationIntrospector;
+import com.puntomarisco.backend.dto.EventoPedido;
+import com.puntomarisco.backend.dto.MesaActualizada;
+import com.puntomarisco.backend.model.Pedido;
+import com.puntomarisco.backend.repository.PedidoRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Journal de eventos de dominio de los pedidos (creado, líneas cambiadas, estado, facturado,
+ * eliminado, mesa actualizada) en segmentos de archivo mapeados en memoria, más el conjunto de
+ * pedidos activos que resulta de aplicarlos. Cada cierto tiempo se guarda un snapshot compacto
+ * de ese conjunto y se borran los segmentos anteriores; al arrancar el estado se reconstruye con
+ * el snapshot y la cola del journal, sin consultar la base de datos.
+ * Un solo hilo escribe y aplica los eventos, siempre tras el commit. Solo ve los cambios hechos
+ * por este nodo, por eso está pensado para una instancia única.
+ */
+@Service
+public class EventosPedidos {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventosPedidos.class);
+
+    private static final String PREFIJO_SEGMENTO = "segmento-";
+    private static final String EXTENSION_SEGMENTO = ".log";
+    private static final String ARCHIVO_SNAPSHOT = "snapshot.json";
+
+    // Cabecera de cada registro: longitud del contenido, CRC32C y secuencia
+    private static final int CABECERA = Integer.BYTES + Integer.BYTES + Long.BYTES;
+
+    // Posición en el journal hasta la que llega el snapshot, y los pedidos activos en ese punto
+    public record Snapshot(long secuencia, int segmento, int posicion, LocalDateTime fecha, List<Pedido> pedidos) {
+    }
+
+    // El journal conserva también los campos que la API solo publica (READ_ONLY en las entidades)
+    private static final class AccesoCompleto extends AnnotationIntrospectorPair {
+        private static final long serialVersionUID = 1L;
+
+        AccesoCompleto(AnnotationIntrospector original) {
+            super(original, NopAnnotationIntrospector.instance);
+        }
+
+        @Override
+        public JsonProperty.Access findPropertyAccess(Annotated anotado) {
+            return JsonProperty.Access.AUTO;
+        }
+    }
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${eventos.habilitado:false}")
+    private boolean habilitado;
+
+    @Value("${eventos.directorio:datos/eventos}")
+    private String directorio;
+
+    @Value("${eventos.segmento-mb:64}")
+    private int segmentoMb;
+
+    @Value("${eventos.snapshot-intervalo-ms:60000}")
+    private long intervaloSnapshotMs;
+
+    @Value("${eventos.sincronizar-ms:1000}")
+    private long intervaloSincronizarMs;
+
+    private ObjectMapper mapper;
+    private Path carpeta;
+    private int capacidadSegmento;
+
+    // Solo los toca el hilo escritor
+    private ExecutorService escritor;
+    private int numeroSegmento;
+    private FileChannel canal;
+    private MappedByteBuffer segmento;
+    private long secuencia;
+    private long secuenciaSnapshot;
+
+    private ScheduledExecutorService tareas;
+
+    private final Map<Long, Pedido> activos = new ConcurrentHashMap<>();
+    private volatile boolean listo;
+
+    @PostConstruct
+    public void iniciar() throws IOException {
+        if (!habilitado) {
+            return;
+        }
+        long inicio = System.nanoTime();
+        mapper = objectMapper.copy();
+        mapper.setAnnotationIntrospector(new AccesoCompleto(mapper.getSerializationConfig().getAnnotationIntrospector()));
+        carpeta = Path.of(directorio);
+        capacidadSegmento = segmentoMb * 1024 * 1024;
+        Files.createDirectories(carpeta);
+
+        Path archivoSnapshot = carpeta.resolve(ARCHIVO_SNAPSHOT);
+        TreeMap<Integer, Path> segmentos = listarSegmentos();
+        int posicion = 0;
+        if (Files.exists(archivoSnapshot)) {
+            Snapshot snapshot = mapper.readValue(archivoSnapshot.toFile(), Snapshot.class);
+            snapshot.pedidos().forEach(p -> activos.put(p.getId(), p));
+            secuencia = secuenciaSnapshot = snapshot.secuencia();
+            numeroSegmento = snapshot.segmento();
+            posicion = snapshot.posicion();
+        } else if (segmentos.isEmpty()) {
+            // Primer arranque con el journal: se parte de los pedidos activos de la base de datos, una sola vez
+            cargarDesdeBaseDeDatos();
+            numeroSegmento = 1;
+        } else {
+            numeroSegmento = segmentos.firstKey();
+        }
+
+        // Cola del journal posterior al snapshot
+        int recorridos = 0;
+        for (Map.Entry<Integer, Path> entrada : segmentos.tailMap(numeroSegmento, true).entrySet()) {
+            int desde = entrada.getKey() == numeroSegmento ? posicion : 0;
+            numeroSegmento = entrada.getKey();
+            posicion = leerSegmento(entrada.getValue(), desde, evento -> {
+                aplicar(evento);
+                secuencia = evento.getSecuencia();
+            });
+            recorridos++;
+        }
+        abrirSegmento(numeroSegmento, posicion);
+        if (!Files.exists(archivoSnapshot)) {
+            escribirSnapshot();
+        }
+
+        escritor = Executors.newSingleThreadExecutor(r -> {
+            Thread hilo = new Thread(r, "eventos-pedidos");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        tareas = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "eventos-pedidos-tareas");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        tareas.scheduleWithFixedDelay(() -> escritor.execute(this::sincronizar),
+                intervaloSincronizarMs, intervaloSincronizarMs, TimeUnit.MILLISECONDS);
+        tareas.scheduleWithFixedDelay(() -> escritor.execute(this::escribirSnapshot),
+                intervaloSnapshotMs, intervaloSnapshotMs, TimeUnit.MILLISECONDS);
+        listo = true;
+
+        logger.info("Estado de pedidos reconstruido en {} ms: {} activos, secuencia {}, {} segmentos leídos",
+                (System.nanoTime() - inicio) / 1_000_000, activos.size(), secuencia, recorridos);
+    }
+
+    @PreDestroy
+    public void detener() throws IOException {
+        if (!listo) {
+            return;
+        }
+        tareas.shutdownNow();
+        escritor.shutdown();
+        try {
+            escritor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        escribirSnapshot();
+        segmento.force();
+        canal.close();
+    }
+
+    public boolean isListo() {
+        return listo;
+    }
+
+    // Pedidos no facturados según el journal, por id
+    public List<Pedido> obtenerActivos() {
+        List<Pedido> resultado = new ArrayList<>(activos.values());
+        resultado.sort(Comparator.comparing(Pedido::getId));
+        return resultado;
+    }
+
+    public void creado(Pedido pedido) {
+        EventoPedido evento = evento(EventoPedido.Tipo.CREADO, pedido.getId());
+        evento.setPedidos(List.of(pedido));
+        registrar(evento);
+    }
+
+    public void lineasCambiadas(Pedido pedido) {
+        EventoPedido evento = evento(EventoPedido.Tipo.LINEAS_CAMBIADAS, pedido.getId());
+        evento.setPedidos(List.of(pedido));
+        registrar(evento);
+    }
+
+    public void estadoCambiado(Pedido pedido) {
+        EventoPedido evento = evento(EventoPedido.Tipo.ESTADO_CAMBIADO, pedido.getId());
+        evento.setEstado(pedido.getEstado());
+        registrar(evento);
+    }
+
+    public void facturado(Pedido pedido) {
+        EventoPedido evento = evento(EventoPedido.Tipo.FACTURADO, pedido.getId());
+        evento.setMetodoPago(pedido.getMetodoPago());
+        registrar(evento);
+    }
+
+    public void eliminado(Long pedidoId) {
+        registrar(evento(EventoPedido.Tipo.ELIMINADO, pedidoId));
+    }
+
+    public void mesaActualizada(MesaActualizada mesa) {
+        EventoPedido evento = evento(EventoPedido.Tipo.MESA_ACTUALIZADA, null);
+        evento.setMesa(mesa.getMesa());
+        evento.setPedidos(mesa.getPedidos());
+        evento.setEliminados(mesa.getEliminados());
+        registrar(evento);
+    }
+
+    /**
+     * Recorre en orden los eventos que aún conserva el journal (los posteriores al último snapshot),
+     * a partir de una secuencia. Sirve para depurar y para reproducir cargas.
+     */
+    public void recorrer(long desde, Consumer<EventoPedido> consumidor) throws IOException {
+        for (Path archivo : listarSegmentos().values()) {
+            leerSegmento(archivo, 0, evento -> {
+                if (evento.getSecuencia() >= desde) {
+                    consumidor.accept(evento);
+                }
+            });
+        }
+    }
+
+    // Eventos en NDJSON, uno por línea, para reproducirlos con otra herramienta
+    public long exportar(OutputStream salida, long desde) throws IOException {
+        long[] total = { 0 };
+        try {
+            recorrer(desde, evento -> {
+                try {
+                    salida.write(mapper.writeValueAsBytes(evento));
+                    salida.write('\n');
+                    total[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return total[0];
+    }
+
+    /**
+     * Eventos en un formato binario de Jackson (CBOR o Smile según la fábrica), uno tras otro
+     */
+    public long exportar(OutputStream salida, long desde, JsonFactory formato) throws IOException {
+        ObjectWriter binario = mapper.copyWith(formato).writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        long[] total = { 0 };
+        try (SequenceWriter secuencia = binario.writeValues(salida)) {
+            recorrer(desde, evento -> {
+                try {
+                    secuencia.write(evento);
+                    total[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return total[0];
+    }
+
+    private static EventoPedido evento(EventoPedido.Tipo tipo, Long pedidoId) {
+        EventoPedido evento = new EventoPedido();
+        evento.setTipo(tipo);
+        evento.setFecha(LocalDateTime.now());
+        evento.setPedidoId(pedidoId);
+        return evento;
+    }
+
+    // Se serializa ahora (el pedido puede cambiar después) y se escribe y aplica tras el commit
+    private void registrar(EventoPedido evento) {
+        if (!listo) {
+            return;
+        }
+        byte[] contenido;
+        try {
+            contenido = mapper.writeValueAsBytes(evento);
+        } catch (JsonProcessingException e) {
+            logger.error("No se pudo serializar el evento {} del pedido {}: {}", evento.getTipo(), evento.getPedidoId(), e.getMessage());
+            return;
+        }
+        Runnable escribir = () -> escritor.execute(() -> escribirYAplicar(contenido));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    escribir.run();
+                }
+            });
+        } else {
+            escribir.run();
+        }
+    }
+
+    private void escribirYAplicar(byte[] contenido) {
+        try {
+            if (CABECERA + contenido.length > capacidadSegmento) {
+                logger.error("Evento de {} bytes mayor que un segmento, se descarta", contenido.length);
+                return;
+            }
+            if (segmento.remaining() < CABECERA + contenido.length) {
+                segmento.force();
+                canal.close();
+                abrirSegmento(numeroSegmento + 1, 0);
+            }
+            long numero = secuencia + 1;
+            CRC32C crc = new CRC32C();
+            crc.update(contenido);
+            int posicion = segmento.position();
+            // La longitud se escribe al final: un registro a medio escribir se lee como fin del journal
+            segmento.position(posicion + Integer.BYTES);
+            segmento.putInt((int) crc.getValue());
+            segmento.putLong(numero);
+            segmento.put(contenido);
+            segmento.putInt(posicion, contenido.length);
+            secuencia = numero;
+
+            EventoPedido evento = mapper.readValue(contenido, EventoPedido.class);
+            evento.setSecuencia(numero);
+            aplicar(evento);
+        } catch (IOException e) {
+            logger.error("Error al escribir en el journal de eventos: {}", e.getMessage(), e);
+        }
+    }
+
+    private void aplicar(EventoPedido evento) {
+        switch (evento.getTipo()) {
+            case CREADO, LINEAS_CAMBIADAS -> {
+                for (Pedido pedido : evento.getPedidos()) {
+                    if (Boolean.TRUE.equals(pedido.getFacturado())) {
+                        activos.remove(pedido.getId());
+                    } else {
+                        activos.put(pedido.getId(), pedido);
+                    }
+                }
+            }
+            case ESTADO_CAMBIADO -> {
+                Pedido pedido = activos.get(evento.getPedidoId());
+                if (pedido != null) {
+                    pedido.setEstado(evento.getEstado());
+                }
+            }
+            case FACTURADO -> activos.remove(evento.getPedidoId());
+            case ELIMINADO -> activos.remove(evento.getPedidoId());
+            case MESA_ACTUALIZADA -> {
+                // Los pedidos abiertos de la mesa pasan a ser exactamente los del evento
+                activos.values().removeIf(p -> evento.getMesa().equals(p.getMesa()));
+                if (evento.getEliminados() != null) {
+                    evento.getEliminados().forEach(activos::remove);
+                }
+                for (Pedido pedido : evento.getPedidos()) {
+                    activos.put(pedido.getId(), pedido);
+                }
+            }
+        }
+    }
+
+    // Recorre un segmento desde una posición y devuelve dónde termina el último registro válido
+    private int leerSegmento(Path archivo, int desde, Consumer<EventoPedido> consumidor) throws IOException {
+        try (FileChannel lectura = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            MappedByteBuffer datos = lectura.map(FileChannel.MapMode.READ_ONLY, 0, lectura.size());
+            int posicion = desde;
+            CRC32C crc = new CRC32C();
+            while (posicion + CABECERA <= datos.limit()) {
+                int longitud = datos.getInt(posicion);
+                if (longitud <= 0 || posicion + CABECERA + longitud > datos.limit()) {
+                    break;
+                }
+                int suma = datos.getInt(posicion + Integer.BYTES);
+                long numero = datos.getLong(posicion + 2 * Integer.BYTES);
+                byte[] contenido = new byte[longitud];
+                datos.get(posicion + CABECERA, contenido);
+                crc.reset();
+                crc.update(contenido);
+                if ((int) crc.getValue() != suma) {
+                    logger.warn("Registro dañado en {} posición {}, se corta la lectura", archivo.getFileName(), posicion);
+                    break;
+                }
+                EventoPedido evento = mapper.readValue(contenido, EventoPedido.class);
+                evento.setSecuencia(numero);
+                consumidor.accept(evento);
+                posicion += CABECERA + longitud;
+            }
+            return posicion;
+        }
+    }
+
+    private void abrirSegmento(int numero, int posicion) throws IOException {
+        numeroSegmento = numero;
+        canal = FileChannel.open(rutaSegmento(numero),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segmento = canal.map(FileChannel.MapMode.READ_WRITE, 0, capacidadSegmento);
+        segmento.position(posicion);
+        // Registro a medio escribir tras una caída: se anula su longitud; lo que quede detrás lo descarta la CRC
+        if (posicion + Integer.BYTES <= capacidadSegmento) {
+            segmento.putInt(posicion, 0);
+        }
+    }
+
+    // Las páginas escritas del segmento actual se llevan al disco periódicamente
+    private void sincronizar() {
+        segmento.force();
+    }
+
+    // Se escribe en un archivo temporal y se renombra; luego sobran los segmentos anteriores
+    private void escribirSnapshot() {
+        if (secuencia == secuenciaSnapshot && Files.exists(carpeta.resolve(ARCHIVO_SNAPSHOT))) {
+            return;
+        }
+        try {
+            segmento.force();
+            Snapshot snapshot = new Snapshot(secuencia, numeroSegmento, segmento.position(), LocalDateTime.now(), obtenerActivos());
+            Path temporal = carpeta.resolve(ARCHIVO_SNAPSHOT + ".tmp");
+            mapper.writeValue(temporal.toFile(), snapshot);
+            Files.move(temporal, carpeta.resolve(ARCHIVO_SNAPSHOT),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            secuenciaSnapshot = secuencia;
+            for (Map.Entry<Integer, Path> anterior : listarSegmentos().headMap(numeroSegmento).entrySet()) {
+                Files.deleteIfExists(anterior.getValue());
+            }
+            logger.debug("Snapshot de {} pedidos activos en la secuencia {}", snapshot.pedidos().size(), secuencia);
+        } catch (IOException e) {
+            logger.error("No se pudo escribir el snapshot de pedidos: {}", e.getMessage(), e);
+        }
+    }
+
+    private void cargarDesdeBaseDeDatos() {
+        TransactionTemplate lectura = new TransactionTemplate(transactionManager);
+        lectura.setReadOnly(true);
+        // Se serializa dentro de la transacción para cargar los detalles
+        byte[] datos = lectura.execute(estado -> {
+            try {
+                return mapper.writeValueAsBytes(pedidoRepository.findPedidosActivos());
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        try {
+            List<Pedido> pedidos = mapper.readValue(datos, new TypeReference<List<Pedido>>() { });
+            pedidos.forEach(p -> activos.put(p.getId(), p));
+            logger.info("Journal de eventos iniciado con {} pedidos activos de la base de datos", pedidos.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private TreeMap<Integer, Path> listarSegmentos() throws IOException {
+        TreeMap<Integer, Path> segmentos = new TreeMap<>();
+        try (Stream<Path> archivos = Files.list(carpeta)) {
+            archivos.forEach(archivo -> {
+                String nombre = archivo.getFileName().toString();
+                if (nombre.startsWith(PREFIJO_SEGMENTO) && nombre.endsWith(EXTENSION_SEGMENTO)) {
+                    segmentos.put(Integer.parseInt(nombre.substring(PREFIJO_SEGMENTO.length(),
+                            nombre.length() - EXTENSION_SEGMENTO.length())), archivo);
+                }
+            });
+        }
+        return segmentos;
+    }
+
+    private Path rutaSegmento(int numero) {
+        return carpeta.resolve(String.format("%s%06d%s", PREFIJO_SEGMENTO, numero, EXTENSION_SEGMENTO));
+    }
+}
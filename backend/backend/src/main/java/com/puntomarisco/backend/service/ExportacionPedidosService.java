@@ -0,0 +1,228 @@
+package com.puntomarisco.backend.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.puntomarisco.backend.model.Centimos;
+
+/**
+ * Exportación de pedidos y sus detalles en CSV o NDJSON con memoria constante:
+ * las filas se leen con un cursor JDBC de solo avance y se escriben directamente en la salida,
+ * sin materializar entidades ni listas.
+ */
+@Service
+public class ExportacionPedidosService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportacionPedidosService.class);
+
+    private static final String SQL_EXPORTAR =
+            "SELECT p.id, p.mesa, p.estado, p.hora, p.total_centimos, p.facturado, p.metodo_pago, " +
+            "d.id AS detalle_id, d.plato, d.cantidad, d.precio_centimos, d.notas, d.estado AS detalle_estado " +
+            "FROM %1$s p LEFT JOIN %2$s d ON d.pedido_id = p.id " +
+            "WHERE p.hora >= ? AND p.hora < ? ORDER BY p.id, d.id";
+
+    private static final String CABECERA_CSV =
+            "pedido_id,mesa,estado,hora,total,facturado,metodo_pago,detalle_id,plato,cantidad,precio,notas,estado_detalle\n";
+
+    public enum Formato {
+        CSV,
+        NDJSON
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ArchivoPedidosService archivoPedidosService;
+
+    /**
+     * Escribe en la salida los pedidos con hora en [desde, hasta). No cierra la salida.
+     * Se lee en una transacción de solo lectura, en la réplica si está configurada.
+     * @return Número de pedidos exportados
+     */
+    @Transactional(readOnly = true)
+    public long exportar(OutputStream salida, LocalDateTime desde, LocalDateTime hasta, Formato formato) throws IOException {
+        long inicio = System.nanoTime();
+        long pedidos = formato == Formato.CSV ? exportarCsv(salida, desde, hasta) : exportarNdjson(salida, desde, hasta);
+        logger.info("Exportación {} de {} a {}: {} pedidos en {} ms", formato, desde, hasta, pedidos,
+                (System.nanoTime() - inicio) / 1_000_000);
+        return pedidos;
+    }
+
+    private long exportarCsv(OutputStream salida, LocalDateTime desde, LocalDateTime hasta) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write(CABECERA_CSV);
+        long[] pedidos = { 0 };
+        long[] ultimoPedido = { Long.MIN_VALUE };
+        recorrer(desde, hasta, rs -> {
+            try {
+                long id = rs.getLong("id");
+                if (id != ultimoPedido[0]) {
+                    ultimoPedido[0] = id;
+                    pedidos[0]++;
+                }
+                writer.write(Long.toString(id));
+                writer.write(',');
+                escribirCsv(writer, rs.getString("mesa"));
+                writer.write(',');
+                escribirCsv(writer, rs.getString("estado"));
+                writer.write(',');
+                escribirCsv(writer, formatearHora(rs.getTimestamp("hora")));
+                writer.write(',');
+                escribirCsv(writer, importe(rs, "total_centimos"));
+                writer.write(',');
+                writer.write(rs.getBoolean("facturado") ? "true" : "false");
+                writer.write(',');
+                escribirCsv(writer, rs.getString("metodo_pago"));
+                writer.write(',');
+                escribirCsv(writer, rs.getString("detalle_id"));
+                writer.write(',');
+                escribirCsv(writer, rs.getString("plato"));
+                writer.write(',');
+                escribirCsv(writer, rs.getString("cantidad"));
+                writer.write(',');
+                escribirCsv(writer, importe(rs, "precio_centimos"));
+                writer.write(',');
+                escribirCsv(writer, rs.getString("notas"));
+                writer.write(',');
+                escribirCsv(writer, rs.getString("detalle_estado"));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
+        return pedidos[0];
+    }
+
+    private long exportarNdjson(OutputStream salida, LocalDateTime desde, LocalDateTime hasta) throws IOException {
+        JsonGenerator gen = objectMapper.getFactory().createGenerator(salida);
+        gen.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        // Sin el espacio que Jackson pone entre valores raíz: cada línea empieza en '{'
+        gen.setRootValueSeparator(null);
+        long[] pedidos = { 0 };
+        long[] ultimoPedido = { Long.MIN_VALUE };
+        recorrer(desde, hasta, rs -> {
+            try {
+                long id = rs.getLong("id");
+                // Las filas llegan ordenadas por pedido: cada cambio de ID cierra el objeto anterior
+                if (id != ultimoPedido[0]) {
+                    if (pedidos[0] > 0) {
+                        cerrarPedido(gen);
+                    }
+                    ultimoPedido[0] = id;
+                    pedidos[0]++;
+                    gen.writeStartObject();
+                    gen.writeNumberField("id", id);
+                    gen.writeStringField("mesa", rs.getString("mesa"));
+                    gen.writeStringField("estado", rs.getString("estado"));
+                    gen.writeStringField("hora", formatearHora(rs.getTimestamp("hora")));
+                    escribirImporte(gen, "total", rs, "total_centimos");
+                    gen.writeBooleanField("facturado", rs.getBoolean("facturado"));
+                    gen.writeStringField("metodoPago", rs.getString("metodo_pago"));
+                    gen.writeArrayFieldStart("detalles");
+                }
+                long detalleId = rs.getLong("detalle_id");
+                if (!rs.wasNull()) {
+                    gen.writeStartObject();
+                    gen.writeNumberField("id", detalleId);
+                    gen.writeStringField("plato", rs.getString("plato"));
+                    gen.writeNumberField("cantidad", rs.getInt("cantidad"));
+                    escribirImporte(gen, "precio", rs, "precio_centimos");
+                    gen.writeStringField("notas", rs.getString("notas"));
+                    gen.writeStringField("estado", rs.getString("detalle_estado"));
+                    gen.writeEndObject();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        if (pedidos[0] > 0) {
+            cerrarPedido(gen);
+        }
+        gen.close();
+        return pedidos[0];
+    }
+
+    private void recorrer(LocalDateTime desde, LocalDateTime hasta, RowCallbackHandler manejador) throws IOException {
+        try {
+            for (ArchivoPedidosService.Tablas tablas : archivoPedidosService.tablasConsulta()) {
+                String sql = String.format(SQL_EXPORTAR, tablas.pedido, tablas.detalle);
+                jdbcTemplate.query(con -> {
+                    PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(Integer.MIN_VALUE);
+                    ps.setTimestamp(1, Timestamp.valueOf(desde));
+                    ps.setTimestamp(2, Timestamp.valueOf(hasta));
+                    return ps;
+                }, manejador);
+            }
+        } catch (UncheckedIOException e) {
+            // El cliente cortó la descarga
+            throw e.getCause();
+        }
+    }
+
+    private static void cerrarPedido(JsonGenerator gen) throws IOException {
+        gen.writeEndArray();
+        gen.writeEndObject();
+        gen.writeRaw('\n');
+    }
+
+    // Importes en céntimos exportados en soles con dos decimales exactos
+    private static void escribirImporte(JsonGenerator gen, String campo, ResultSet rs, String columna)
+            throws IOException, SQLException {
+        long centimos = rs.getLong(columna);
+        if (rs.wasNull()) {
+            gen.writeNullField(campo);
+        } else {
+            gen.writeNumberField(campo, Centimos.aDecimal(centimos));
+        }
+    }
+
+    private static String importe(ResultSet rs, String columna) throws SQLException {
+        long centimos = rs.getLong(columna);
+        return rs.wasNull() ? null : Centimos.aDecimal(centimos).toPlainString();
+    }
+
+    private static String formatearHora(Timestamp hora) {
+        return hora != null ? hora.toLocalDateTime().toString() : null;
+    }
+
+    private static void escribirCsv(Writer writer, String valor) throws IOException {
+        if (valor == null) {
+            return;
+        }
+        boolean comillas = valor.indexOf(',') >= 0 || valor.indexOf('"') >= 0
+                || valor.indexOf('\n') >= 0 || valor.indexOf('\r') >= 0;
+        if (!comillas) {
+            writer.write(valor);
+            return;
+        }
+        writer.write('"');
+        writer.write(valor.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,167 @@
+package com.puntomarisco.backend.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Ejecuta BCrypt (codificar y verificar) en un pool propio limitado al número de núcleos,
+ * con cola acotada. Si la cola está llena el login se rechaza al instante en vez de ocupar
+ * hilos de Tomcat; además aplica límites de intentos por email y por IP.
+ */
+@Service
+public class HashContrasenasService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HashContrasenasService.class);
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Value("${seguridad.bcrypt.hilos:0}")
+    private int hilos;
+
+    @Value("${seguridad.bcrypt.capacidad-cola:32}")
+    private int capacidadCola;
+
+    @Value("${seguridad.bcrypt.espera-maxima-ms:5000}")
+    private long esperaMaximaMs;
+
+    @Value("${seguridad.login.intentos-email:5}")
+    private int intentosPorEmail;
+
+    @Value("${seguridad.login.intentos-ip:30}")
+    private int intentosPorIp;
+
+    @Value("${seguridad.login.recarga-por-minuto:5}")
+    private int recargaPorMinuto;
+
+    private ThreadPoolExecutor executor;
+    private LimitadorIntentos limitadorEmail;
+    private LimitadorIntentos limitadorIp;
+
+    private final LatenciaHistograma latenciaHash = new LatenciaHistograma();
+    private final LatenciaHistograma esperaCola = new LatenciaHistograma();
+    private final AtomicLong rechazadosSaturacion = new AtomicLong();
+    private final AtomicLong rechazadosLimite = new AtomicLong();
+
+    @PostConstruct
+    public void iniciar() {
+        int tamano = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+        AtomicInteger contador = new AtomicInteger();
+        executor = new ThreadPoolExecutor(tamano, tamano, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola),
+                r -> {
+                    Thread hilo = new Thread(r, "bcrypt-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        limitadorEmail = new LimitadorIntentos(intentosPorEmail, recargaPorMinuto);
+        limitadorIp = new LimitadorIntentos(intentosPorIp, recargaPorMinuto * 6);
+        logger.info("Pool BCrypt iniciado con {} hilos y cola de {}", tamano, capacidadCola);
+    }
+
+    @PreDestroy
+    public void detener() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Aplica los límites de intentos de login antes de tocar la base de datos o BCrypt
+     * @throws AutenticacionSaturadaException Si la IP o el email superaron su límite
+     */
+    public void verificarLimites(String email, String ip) {
+        // Primero la IP: una IP ya bloqueada no gasta intentos del email y no puede bloquear cuentas ajenas
+        if (!limitadorIp.intentar(ip)) {
+            rechazadosLimite.incrementAndGet();
+            throw new AutenticacionSaturadaException("Demasiados intentos desde esta dirección", true,
+                    limitadorIp.segundosParaReintentar());
+        }
+        if (!limitadorEmail.intentar(email)) {
+            rechazadosLimite.incrementAndGet();
+            throw new AutenticacionSaturadaException("Demasiados intentos para este usuario", true,
+                    limitadorEmail.segundosParaReintentar());
+        }
+    }
+
+    public boolean verificar(String contrasena, String hash) {
+        return ejecutar(() -> passwordEncoder.matches(contrasena, hash));
+    }
+
+    public String codificar(String contrasena) {
+        return ejecutar(() -> passwordEncoder.encode(contrasena));
+    }
+
+    private <T> T ejecutar(Callable<T> tarea) {
+        long encolado = System.nanoTime();
+        Future<T> futuro;
+        try {
+            futuro = executor.submit(() -> {
+                long inicio = System.nanoTime();
+                esperaCola.registrar((inicio - encolado) / 1_000_000);
+                try {
+                    return tarea.call();
+                } finally {
+                    latenciaHash.registrar((System.nanoTime() - inicio) / 1_000_000);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rechazadosSaturacion.incrementAndGet();
+            logger.warn("Pool BCrypt saturado ({} en cola), se rechaza la petición", executor.getQueue().size());
+            throw new AutenticacionSaturadaException("Servicio de autenticación saturado", false, 1);
+        }
+
+        try {
+            return futuro.get(esperaMaximaMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            futuro.cancel(true);
+            rechazadosSaturacion.incrementAndGet();
+            throw new AutenticacionSaturadaException("Tiempo de espera de autenticación agotado", false, 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Autenticación interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error al procesar la contraseña", e.getCause());
+        }
+    }
+
+    @Scheduled(fixedDelay = 300_000)
+    public void limpiarLimitadores() {
+        limitadorEmail.limpiar();
+        limitadorIp.limpiar();
+    }
+
+    public Map<String, Object> obtenerMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("hilos", executor.getMaximumPoolSize());
+        metricas.put("activos", executor.getActiveCount());
+        metricas.put("enCola", executor.getQueue().size());
+        metricas.put("capacidadCola", capacidadCola);
+        metricas.put("completados", executor.getCompletedTaskCount());
+        metricas.put("rechazadosSaturacion", rechazadosSaturacion.get());
+        metricas.put("rechazadosLimiteIntentos", rechazadosLimite.get());
+        metricas.put("latenciaHashMs", latenciaHash.resumen());
+        metricas.put("esperaColaMs", esperaCola.resumen());
+        return metricas;
+    }
+}
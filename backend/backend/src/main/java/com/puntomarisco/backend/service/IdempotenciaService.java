@@ -0,0 +1,243 @@
+package com.puntomarisco.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Respuestas ya enviadas para cada Idempotency-Key, para que un reintento del cliente reciba la
+ * misma respuesta sin repetir la operación. En memoria con capacidad máxima y caducidad; si se
+ * habilita, también en la tabla idempotencia_respuesta para sobrevivir a un reinicio.
+ * Mientras la primera petición con una clave está en curso, las repetidas esperan su resultado.
+ */
+@Service
+public class IdempotenciaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotenciaService.class);
+
+    private static final String TABLA = "idempotencia_respuesta";
+
+    private static final String SQL_BUSCAR =
+            "SELECT huella, estado, tipo_contenido, cuerpo FROM " + TABLA + " WHERE clave = ? AND creado >= ?";
+
+    private static final String SQL_GUARDAR =
+            "INSERT IGNORE INTO " + TABLA + " (clave, huella, estado, tipo_contenido, cuerpo, creado) VALUES (?, ?, ?, ?, ?, ?)";
+
+    // Respuesta tal como se envió; la huella identifica el cuerpo de la petición original
+    public record Respuesta(int estado, String tipoContenido, byte[] cuerpo, String huella) {
+    }
+
+    /**
+     * Resultado de reservar una clave: o la petición es la primera y debe ejecutar la operación
+     * (y después llamar a completar o abandonar), o hay que esperar a la que ya la tiene.
+     */
+    public static final class Reserva {
+        private final boolean propia;
+        private final CompletableFuture<Respuesta> resultado;
+
+        private Reserva(boolean propia, CompletableFuture<Respuesta> resultado) {
+            this.propia = propia;
+            this.resultado = resultado;
+        }
+
+        public boolean isPropia() {
+            return propia;
+        }
+    }
+
+    private static final class Entrada {
+        final CompletableFuture<Respuesta> resultado = new CompletableFuture<>();
+        final long creadoMs = System.currentTimeMillis();
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${idempotencia.capacidad:10000}")
+    private int capacidad;
+
+    @Value("${idempotencia.ttl-minutos:60}")
+    private long ttlMinutos;
+
+    @Value("${idempotencia.espera-maxima-ms:30000}")
+    private long esperaMaximaMs;
+
+    @Value("${idempotencia.persistir:false}")
+    private boolean persistir;
+
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+    // Claves en orden de llegada, para desalojar las más antiguas al superar la capacidad
+    private final ConcurrentLinkedQueue<String> orden = new ConcurrentLinkedQueue<>();
+
+    private ExecutorService escritor;
+
+    @PostConstruct
+    public void iniciar() {
+        if (!persistir) {
+            return;
+        }
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLA + " ("
+                + "clave CHAR(64) NOT NULL PRIMARY KEY, huella CHAR(64) NOT NULL, estado INT NOT NULL, "
+                + "tipo_contenido VARCHAR(100), cuerpo MEDIUMBLOB, creado DATETIME NOT NULL, "
+                + "INDEX idx_idempotencia_creado (creado))");
+        escritor = Executors.newSingleThreadExecutor(r -> {
+            Thread hilo = new Thread(r, "idempotencia");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (escritor != null) {
+            escritor.shutdown();
+        }
+    }
+
+    public Reserva reservar(String clave) {
+        Entrada nueva = new Entrada();
+        Entrada existente = entradas.putIfAbsent(clave, nueva);
+        if (existente != null && !caducada(existente)) {
+            return new Reserva(false, existente.resultado);
+        }
+        if (existente != null && !entradas.replace(clave, existente, nueva)) {
+            // Otra petición renovó la entrada caducada a la vez
+            return reservar(clave);
+        }
+        orden.add(clave);
+        desalojar();
+
+        Respuesta persistida = persistir ? buscarPersistida(clave) : null;
+        if (persistida != null) {
+            nueva.resultado.complete(persistida);
+            return new Reserva(false, nueva.resultado);
+        }
+        return new Reserva(true, nueva.resultado);
+    }
+
+    /**
+     * Espera la respuesta de la primera petición.
+     * @return La respuesta guardada, o null si la primera petición falló y esta debe intentarlo de nuevo
+     * @throws TimeoutException Si la primera sigue en curso tras la espera máxima
+     */
+    public Respuesta esperar(Reserva reserva) throws TimeoutException, InterruptedException {
+        try {
+            return reserva.resultado.get(esperaMaximaMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    public void completar(String clave, Respuesta respuesta) {
+        Entrada entrada = entradas.get(clave);
+        if (entrada != null) {
+            entrada.resultado.complete(respuesta);
+        }
+        if (persistir) {
+            escritor.execute(() -> guardarPersistida(clave, respuesta));
+        }
+    }
+
+    // La operación falló: no se guarda nada y quien esperaba vuelve a intentarlo
+    public void abandonar(String clave) {
+        Entrada entrada = entradas.remove(clave);
+        if (entrada != null) {
+            entrada.resultado.completeExceptionally(new IllegalStateException("Solicitud original fallida"));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idempotencia.limpieza-ms:60000}")
+    public void limpiar() {
+        entradas.entrySet().removeIf(e -> e.getValue().resultado.isDone() && caducada(e.getValue()));
+        orden.removeIf(clave -> !entradas.containsKey(clave));
+        if (persistir) {
+            try {
+                jdbcTemplate.update("DELETE FROM " + TABLA + " WHERE creado < ?",
+                        Timestamp.valueOf(LocalDateTime.now().minusMinutes(ttlMinutos)));
+            } catch (Exception e) {
+                logger.warn("No se pudieron borrar las claves de idempotencia caducadas: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * SHA-256 en hexadecimal, para claves y huellas de tamaño fijo
+     */
+    public static String huella(String prefijo, byte[] datos) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(prefijo.getBytes(StandardCharsets.UTF_8));
+            sha.update(datos);
+            return HexFormat.of().formatHex(sha.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private boolean caducada(Entrada entrada) {
+        return System.currentTimeMillis() - entrada.creadoMs > TimeUnit.MINUTES.toMillis(ttlMinutos);
+    }
+
+    // Solo se quitan entradas terminadas; una en curso se vuelve a poner al final
+    private void desalojar() {
+        int revisadas = 0;
+        while (entradas.size() > capacidad && revisadas++ < capacidad) {
+            String clave = orden.poll();
+            if (clave == null) {
+                return;
+            }
+            Entrada entrada = entradas.get(clave);
+            if (entrada != null && !entrada.resultado.isDone()) {
+                orden.add(clave);
+            } else if (entrada != null) {
+                entradas.remove(clave, entrada);
+            }
+        }
+    }
+
+    private Respuesta buscarPersistida(String clave) {
+        try {
+            List<Respuesta> filas = jdbcTemplate.query(SQL_BUSCAR, (rs, i) -> new Respuesta(
+                    rs.getInt("estado"), rs.getString("tipo_contenido"), rs.getBytes("cuerpo"), rs.getString("huella")),
+                    clave, Timestamp.valueOf(LocalDateTime.now().minusMinutes(ttlMinutos)));
+            return filas.isEmpty() ? null : filas.get(0);
+        } catch (Exception e) {
+            // Sin la tabla disponible se sigue solo con la memoria
+            logger.warn("No se pudo consultar la clave de idempotencia: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void guardarPersistida(String clave, Respuesta respuesta) {
+        try {
+            jdbcTemplate.update(SQL_GUARDAR, clave, respuesta.huella(), respuesta.estado(), respuesta.tipoContenido(),
+                    respuesta.cuerpo(), Timestamp.valueOf(LocalDateTime.now()));
+        } catch (Exception e) {
+            logger.warn("No se pudo guardar la respuesta idempotente: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.puntomarisco.backend.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.exception.JDBCConnectionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.puntomarisco.backend.model.DetallePedido;
+import com.puntomarisco.backend.model.Pedido;
+import com.puntomarisco.backend.repository.PedidoRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Journal local de pedidos nuevos, para seguir tomando pedidos aunque la base de datos remota
+ * esté lenta o caída. Cada pedido se añade con fsync a un archivo de solo anexado antes de
+ * responder, y un único hilo lo envía después a MySQL en el orden en que llegó, reintentando
+ * mientras falle la conexión. Las claves ya enviadas se anotan en un segundo archivo; ambos se
+ * vacían cuando no queda nada pendiente.
+ * Modos: DESACTIVADO, RESPALDO (al disco solo si MySQL no responde) y LOCAL (siempre al disco primero).
+ */
+@Service
+public class JournalPedidos {
+
+    private static final Logger logger = LoggerFactory.getLogger(JournalPedidos.class);
+
+    private static final String ARCHIVO_PEDIDOS = "pedidos.jnl";
+    private static final String ARCHIVO_CONFIRMADOS = "confirmados.jnl";
+    private static final String ARCHIVO_RECHAZADOS = "rechazados.jnl";
+
+    public enum Modo {
+        DESACTIVADO,
+        RESPALDO,
+        LOCAL
+    }
+
+    // Línea del journal: el pedido tal como llegó, con su clave y la hora de recepción
+    public record Entrada(String clave, LocalDateTime recibido, Pedido pedido) {
+    }
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${pedidos.journal.modo:respaldo}")
+    private String modoConfigurado;
+
+    @Value("${pedidos.journal.directorio:datos/journal}")
+    private String directorio;
+
+    @Value("${pedidos.journal.reintento-ms:5000}")
+    private long reintentoMs;
+
+    private Modo modo;
+    private FileChannel pedidos;
+    private FileChannel confirmados;
+    private FileChannel rechazados;
+    private ScheduledExecutorService replicador;
+
+    // clave -> línea JSON aún no enviada, en orden de llegada. Protegido por this
+    private final Map<String, String> pendientes = new LinkedHashMap<>();
+
+    private final AtomicLong totalReplicados = new AtomicLong();
+    private final AtomicLong totalRechazados = new AtomicLong();
+    private volatile boolean conectado = true;
+    private volatile LocalDateTime ultimaReplicacion;
+    private volatile String ultimoError;
+
+    @PostConstruct
+    public void iniciar() throws IOException {
+        modo = Modo.valueOf(modoConfigurado.trim().toUpperCase(Locale.ROOT));
+        if (modo == Modo.DESACTIVADO) {
+            return;
+        }
+        Path carpeta = Path.of(directorio);
+        Files.createDirectories(carpeta);
+        recuperar(carpeta);
+
+        pedidos = abrir(carpeta.resolve(ARCHIVO_PEDIDOS));
+        confirmados = abrir(carpeta.resolve(ARCHIVO_CONFIRMADOS));
+        rechazados = abrir(carpeta.resolve(ARCHIVO_RECHAZADOS));
+
+        replicador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "journal-pedidos");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        // El primer envío espera un ciclo para no competir con el arranque
+        replicador.scheduleWithFixedDelay(this::replicar, reintentoMs, reintentoMs, TimeUnit.MILLISECONDS);
+        logger.info("Journal de pedidos en modo {} en {} ({} pendientes de enviar)",
+                modo, carpeta.toAbsolutePath(), pendientes.size());
+    }
+
+    @PreDestroy
+    public void detener() throws IOException {
+        if (replicador == null) {
+            return;
+        }
+        replicador.shutdown();
+        try {
+            replicador.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pedidos.close();
+        confirmados.close();
+        rechazados.close();
+    }
+
+    /**
+     * Alta de un pedido según el modo. Devuelve el pedido guardado en MySQL (con id) o, si quedó
+     * solo en el journal, el pedido sin id con su claveLocal y sinConexion si MySQL no responde.
+     */
+    public Pedido crear(Pedido pedido) {
+        if (modo == Modo.DESACTIVADO) {
+            return pedidoService.guardarPedidoConDetalles(pedido);
+        }
+        pedido.setClaveLocal(UUID.randomUUID().toString());
+        pedido.setHora(LocalDateTime.now());
+
+        // Con pedidos aún en cola el nuevo va detrás, para que cocina los reciba en orden
+        if (modo == Modo.LOCAL || hayPendientes()) {
+            Pedido registrado = registrar(pedido);
+            registrado.setSinConexion(!conectado);
+            return registrado;
+        }
+        try {
+            return pedidoService.guardarPedidoConDetalles(pedido);
+        } catch (RuntimeException e) {
+            if (!esReintentable(e)) {
+                throw e;
+            }
+            logger.warn("Base de datos no disponible, pedido de la mesa {} guardado en el journal local: {}",
+                    pedido.getMesa(), e.getMessage());
+            conectado = false;
+            ultimoError = e.getMessage();
+            // Un pedido que sí llegó a confirmarse se reconoce por su clave al reenviarlo
+            Pedido registrado = registrar(pedido);
+            registrado.setSinConexion(true);
+            return registrado;
+        }
+    }
+
+    // Pedidos aceptados que aún no están en MySQL
+    public List<Pedido> obtenerPendientes() {
+        List<String> lineas;
+        synchronized (this) {
+            lineas = new ArrayList<>(pendientes.values());
+        }
+        List<Pedido> resultado = new ArrayList<>(lineas.size());
+        for (String linea : lineas) {
+            resultado.add(leerPedido(leer(linea)));
+        }
+        return resultado;
+    }
+
+    public Map<String, Object> obtenerEstado() {
+        Map<String, Object> estado = new LinkedHashMap<>();
+        estado.put("modo", modo);
+        estado.put("conectado", conectado);
+        synchronized (this) {
+            estado.put("pendientes", pendientes.size());
+        }
+        estado.put("replicados", totalReplicados.get());
+        estado.put("rechazados", totalRechazados.get());
+        estado.put("ultimaReplicacion", ultimaReplicacion);
+        estado.put("ultimoError", ultimoError);
+        return estado;
+    }
+
+    private Pedido registrar(Pedido pedido) {
+        // Un intento fallido contra MySQL pudo asignar ids que la base de datos nunca confirmó
+        pedido.setId(null);
+        pedido.setVersion(0);
+        if (pedido.getDetalles() != null) {
+            for (DetallePedido detalle : pedido.getDetalles()) {
+                detalle.setId(null);
+            }
+        }
+        pedido.setEstado(Pedido.EstadoPedido.PENDIENTE);
+        pedido.setFacturado(false);
+        pedido.setTotalCentimos(PedidoService.totalCentimos(pedido.getDetalles()));
+
+        String linea;
+        try {
+            linea = objectMapper.writeValueAsString(new Entrada(pedido.getClaveLocal(), pedido.getHora(), pedido));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Pedido no serializable: " + e.getOriginalMessage(), e);
+        }
+        synchronized (this) {
+            anexar(pedidos, linea);
+            pendientes.put(pedido.getClaveLocal(), linea);
+        }
+        replicador.execute(this::replicar);
+        return pedido;
+    }
+
+    // Solo corre en el hilo del replicador: envía los pendientes en orden hasta vaciar la cola o perder la conexión
+    private void replicar() {
+        Map.Entry<String, String> siguiente;
+        while ((siguiente = primeraPendiente()) != null) {
+            // Se relee en cada intento: uno fallido deja ids y referencias asignados en el objeto
+            Entrada entrada = leer(siguiente.getValue());
+            try {
+                // Reconciliación: si un intento anterior sí llegó a MySQL no se vuelve a insertar
+                if (!pedidoRepository.existsByClaveLocal(entrada.clave())) {
+                    pedidoService.guardarPedidoConDetalles(leerPedido(entrada));
+                }
+                confirmar(entrada.clave());
+                totalReplicados.incrementAndGet();
+                ultimaReplicacion = LocalDateTime.now();
+                conectado = true;
+            } catch (UncheckedIOException e) {
+                // No se pudo anotar la confirmación: sigue pendiente y la reconciliación evita duplicarlo
+                ultimoError = e.getMessage();
+                logger.error("No se pudo confirmar el pedido {} en el journal: {}", entrada.clave(), e.getMessage(), e);
+                return;
+            } catch (RuntimeException e) {
+                if (esReintentable(e)) {
+                    conectado = false;
+                    ultimoError = e.getMessage();
+                    logger.warn("No se pudo enviar el pedido {} del journal, se reintentará: {}", entrada.clave(), e.getMessage());
+                    return;
+                }
+                // Datos que MySQL nunca aceptará: se apartan para revisión y no bloquean la cola
+                logger.error("Pedido {} del journal rechazado por la base de datos: {}", entrada.clave(), e.getMessage(), e);
+                try {
+                    synchronized (this) {
+                        anexar(rechazados, siguiente.getValue());
+                    }
+                    confirmar(entrada.clave());
+                } catch (UncheckedIOException io) {
+                    // Sin escribir en disco no se aparta: sigue pendiente y se reintenta en la próxima pasada
+                    ultimoError = io.getMessage();
+                    logger.error("No se pudo apartar el pedido {} del journal: {}", entrada.clave(), io.getMessage(), io);
+                    return;
+                }
+                totalRechazados.incrementAndGet();
+            }
+        }
+        compactar();
+    }
+
+    private synchronized boolean hayPendientes() {
+        return !pendientes.isEmpty();
+    }
+
+    private synchronized Map.Entry<String, String> primeraPendiente() {
+        return pendientes.isEmpty() ? null : pendientes.entrySet().iterator().next();
+    }
+
+    private synchronized void confirmar(String clave) {
+        anexar(confirmados, clave);
+        pendientes.remove(clave);
+    }
+
+    // Sin pendientes ya no hace falta el historial: se vacían los dos archivos (primero el de pedidos)
+    private synchronized void compactar() {
+        try {
+            if (!pendientes.isEmpty() || pedidos.size() == 0) {
+                return;
+            }
+            pedidos.truncate(0);
+            pedidos.force(true);
+            confirmados.truncate(0);
+            confirmados.force(true);
+        } catch (IOException e) {
+            logger.warn("No se pudo compactar el journal de pedidos: {}", e.getMessage());
+        }
+    }
+
+    // Pedidos del archivo cuya clave no figura entre los confirmados
+    private void recuperar(Path carpeta) throws IOException {
+        Set<String> enviadas = new HashSet<>();
+        Path archivoConfirmados = carpeta.resolve(ARCHIVO_CONFIRMADOS);
+        if (Files.exists(archivoConfirmados)) {
+            for (String clave : Files.readAllLines(archivoConfirmados, StandardCharsets.UTF_8)) {
+                enviadas.add(clave.trim());
+            }
+        }
+        Path archivoPedidos = carpeta.resolve(ARCHIVO_PEDIDOS);
+        if (!Files.exists(archivoPedidos)) {
+            return;
+        }
+        for (String linea : Files.readAllLines(archivoPedidos, StandardCharsets.UTF_8)) {
+            if (linea.isBlank()) {
+                continue;
+            }
+            try {
+                Entrada entrada = objectMapper.readValue(linea, Entrada.class);
+                if (!enviadas.contains(entrada.clave())) {
+                    pendientes.put(entrada.clave(), linea);
+                }
+            } catch (JsonProcessingException e) {
+                // Última línea a medio escribir por una caída: nunca se respondió al cliente
+                logger.warn("Línea ilegible en el journal de pedidos, se descarta: {}", e.getOriginalMessage());
+            }
+        }
+    }
+
+    private Entrada leer(String linea) {
+        try {
+            return objectMapper.readValue(linea, Entrada.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Journal de pedidos corrupto", e);
+        }
+    }
+
+    // Completa el pedido leído con su clave y la hora en que se recibió
+    private static Pedido leerPedido(Entrada entrada) {
+        Pedido pedido = entrada.pedido();
+        pedido.setClaveLocal(entrada.clave());
+        pedido.setHora(entrada.recibido());
+        return pedido;
+    }
+
+    private static FileChannel abrir(Path archivo) throws IOException {
+        return FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // Escritura completa más fsync de los datos: la línea sobrevive a una caída del proceso o del equipo
+    private static void anexar(FileChannel canal, String linea) {
+        ByteBuffer datos = ByteBuffer.wrap((linea + "\n").getBytes(StandardCharsets.UTF_8));
+        try {
+            while (datos.hasRemaining()) {
+                canal.write(datos);
+            }
+            canal.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir en el journal de pedidos", e);
+        }
+    }
+
+    /**
+     * Fallos por los que conviene reintentar: sin conexión, timeouts del pool o de la consulta,
+     * y el lock de la mesa ocupado.
+     */
+    static boolean esReintentable(Throwable e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof DataAccessResourceFailureException
+                    || causa instanceof CannotCreateTransactionException
+                    || causa instanceof TransientDataAccessException
+                    || causa instanceof JDBCConnectionException
+                    || causa instanceof SQLTransientException
+                    || causa instanceof SQLRecoverableException
+                    || causa instanceof MesaOcupadaException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
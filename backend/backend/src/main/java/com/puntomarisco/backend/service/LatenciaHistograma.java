@@ -0,0 +1,89 @@
+package com.puntomarisco.backend.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latencias de memoria fija al estilo HDR: buckets lineales hasta 64
+ * y luego 32 sub-buckets por cada potencia de dos (error relativo menor a ~3%).
+ * Registrar un valor es lock-free; los percentiles se calculan recorriendo los buckets.
+ */
+public class LatenciaHistograma {
+
+    private static final int LINEALES = 64;
+    private static final int SUB_BUCKETS = 32;
+    private static final int MAX_EXPONENTE = 40;
+    private static final long VALOR_MAXIMO = (1L << (MAX_EXPONENTE + 1)) - 1;
+    private static final int BUCKETS = LINEALES + (MAX_EXPONENTE - 5) * SUB_BUCKETS;
+
+    private final AtomicLongArray conteos = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong suma = new AtomicLong();
+    private final AtomicLong maximo = new AtomicLong();
+
+    public void registrar(long valor) {
+        long v = Math.max(0, Math.min(valor, VALOR_MAXIMO));
+        conteos.incrementAndGet(indice(v));
+        total.incrementAndGet();
+        suma.addAndGet(v);
+        maximo.accumulateAndGet(v, Math::max);
+    }
+
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * Valor aproximado bajo el cual cae el porcentaje indicado de las muestras
+     * @param percentil Valor entre 0 y 100
+     */
+    public long percentil(double percentil) {
+        long n = total.get();
+        if (n == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(percentil / 100.0 * n));
+        long acumulado = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            acumulado += conteos.get(i);
+            if (acumulado >= objetivo) {
+                return Math.min(valorRepresentativo(i), maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    public Map<String, Object> resumen() {
+        Map<String, Object> resumen = new LinkedHashMap<>();
+        long n = total.get();
+        resumen.put("muestras", n);
+        resumen.put("p50", percentil(50));
+        resumen.put("p95", percentil(95));
+        resumen.put("p99", percentil(99));
+        resumen.put("promedio", n > 0 ? suma.get() / n : 0);
+        resumen.put("maximo", maximo.get());
+        return resumen;
+    }
+
+    private static int indice(long v) {
+        if (v < LINEALES) {
+            return (int) v;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(v);
+        int mantisa = (int) (v >> (exponente - 5));
+        return LINEALES + (exponente - 6) * SUB_BUCKETS + (mantisa - SUB_BUCKETS);
+    }
+
+    private static long valorRepresentativo(int indice) {
+        if (indice < LINEALES) {
+            return indice;
+        }
+        int k = indice - LINEALES;
+        int exponente = k / SUB_BUCKETS + 6;
+        long mantisa = k % SUB_BUCKETS + SUB_BUCKETS;
+        long ancho = 1L << (exponente - 5);
+        return mantisa * ancho + ancho / 2;
+    }
+}
@@ -0,0 +1,122 @@
+package com.puntomarisco.backend.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Lectura compartida (single-flight) de un listado muy consultado. Las peticiones que llegan
+ * mientras la consulta está en curso esperan su resultado en lugar de lanzar la suya, y todas
+ * reciben el mismo JSON ya serializado. Con vigencia mayor que cero el resultado se reutiliza
+ * además durante esos milisegundos. Tras una escritura se llama a invalidar: las peticiones
+ * siguientes no se unen a una consulta empezada antes.
+ * El arreglo devuelto es compartido y no debe modificarse.
+ */
+public class LecturaCompartida {
+
+    private static final class Vuelo {
+        final long generacion;
+        final CompletableFuture<byte[]> resultado = new CompletableFuture<>();
+        volatile long terminadoMs;
+
+        Vuelo(long generacion) {
+            this.generacion = generacion;
+        }
+    }
+
+    private final Supplier<byte[]> consulta;
+    private final long vigenciaMs;
+    private final AtomicReference<Vuelo> actual = new AtomicReference<>();
+    private final AtomicLong generacion = new AtomicLong();
+
+    public LecturaCompartida(Supplier<byte[]> consulta, long vigenciaMs) {
+        this.consulta = consulta;
+        this.vigenciaMs = vigenciaMs;
+    }
+
+    public byte[] obtener() {
+        while (true) {
+            Vuelo vuelo = actual.get();
+            long vigente = generacion.get();
+            if (vuelo != null && vuelo.generacion == vigente && reutilizable(vuelo)) {
+                return esperar(vuelo);
+            }
+            Vuelo nuevo = new Vuelo(vigente);
+            if (actual.compareAndSet(vuelo, nuevo)) {
+                return ejecutar(nuevo);
+            }
+        }
+    }
+
+    /**
+     * Descarta la consulta en curso y el resultado guardado. Dentro de una transacción se repite
+     * tras el commit, para no guardar lo leído entre la escritura y el commit.
+     */
+    public void invalidar() {
+        generacion.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int estado) {
+                    generacion.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    /**
+     * JSON de la respuesta con el ObjectMapper de la aplicación
+     */
+    public static byte[] json(ObjectMapper objectMapper, Object valor) {
+        try {
+            return objectMapper.writeValueAsBytes(valor);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar la respuesta", e);
+        }
+    }
+
+    // En curso, o terminada bien y aún dentro de la vigencia
+    private boolean reutilizable(Vuelo vuelo) {
+        if (!vuelo.resultado.isDone()) {
+            return true;
+        }
+        return !vuelo.resultado.isCompletedExceptionally()
+                && System.currentTimeMillis() - vuelo.terminadoMs < vigenciaMs;
+    }
+
+    private byte[] ejecutar(Vuelo vuelo) {
+        try {
+            byte[] cuerpo = consulta.get();
+            vuelo.terminadoMs = System.currentTimeMillis();
+            vuelo.resultado.complete(cuerpo);
+            if (vigenciaMs <= 0) {
+                actual.compareAndSet(vuelo, null);
+            }
+            return cuerpo;
+        } catch (RuntimeException | Error e) {
+            // Quien esperaba recibe el mismo error; la siguiente petición vuelve a consultar
+            actual.compareAndSet(vuelo, null);
+            vuelo.resultado.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static byte[] esperar(Vuelo vuelo) {
+        try {
+            return vuelo.resultado.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+}
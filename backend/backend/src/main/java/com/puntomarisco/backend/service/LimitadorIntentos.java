@@ -0,0 +1,74 @@
+package com.puntomarisco.backend.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limitador por clave con cubetas de fichas (token bucket): cada clave admite una ráfaga
+ * de {@code capacidad} intentos y recupera {@code recargaPorMinuto} fichas por minuto.
+ */
+public class LimitadorIntentos {
+
+    private final double capacidad;
+    private final double recargaPorNano;
+    private final Map<String, Cubeta> cubetas = new ConcurrentHashMap<>();
+
+    public LimitadorIntentos(int capacidad, int recargaPorMinuto) {
+        this.capacidad = capacidad;
+        this.recargaPorNano = recargaPorMinuto / 60_000_000_000.0;
+    }
+
+    /**
+     * Consume una ficha de la clave
+     * @return true si el intento está permitido
+     */
+    public boolean intentar(String clave) {
+        if (clave == null) {
+            return true;
+        }
+        return cubetas.computeIfAbsent(clave, k -> new Cubeta(capacidad)).consumir(System.nanoTime());
+    }
+
+    /**
+     * Segundos aproximados hasta que la clave vuelva a tener una ficha
+     */
+    public long segundosParaReintentar() {
+        return Math.max(1, (long) Math.ceil(1.0 / recargaPorNano / 1_000_000_000.0));
+    }
+
+    /**
+     * Elimina las cubetas que ya se recargaron por completo (claves inactivas)
+     */
+    public void limpiar() {
+        long ahora = System.nanoTime();
+        cubetas.values().removeIf(c -> c.llena(ahora));
+    }
+
+    private final class Cubeta {
+        private double fichas;
+        private long ultimaRecarga = System.nanoTime();
+
+        Cubeta(double fichas) {
+            this.fichas = fichas;
+        }
+
+        synchronized boolean consumir(long ahora) {
+            recargar(ahora);
+            if (fichas >= 1.0) {
+                fichas -= 1.0;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized boolean llena(long ahora) {
+            recargar(ahora);
+            return fichas >= capacidad;
+        }
+
+        private void recargar(long ahora) {
+            fichas = Math.min(capacidad, fichas + (ahora - ultimaRecarga) * recargaPorNano);
+            ultimaRecarga = ahora;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.puntomarisco.backend.service;
+
+/**
+ * Se lanza cuando el lock de una mesa no se obtiene dentro de la espera máxima (o la espera se
+ * interrumpe). Es un fallo transitorio: la misma operación puede reintentarse más tarde.
+ */
+public class MesaOcupadaException extends IllegalStateException {
+
+    private final String mesa;
+
+    public MesaOcupadaException(String mensaje, String mesa, Throwable causa) {
+        super(mensaje + ": " + mesa, causa);
+        this.mesa = mesa;
+    }
+
+    public String getMesa() {
+        return mesa;
+    }
+}
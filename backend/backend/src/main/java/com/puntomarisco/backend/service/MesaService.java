@@ -3,11 +3,18 @@ package com.puntomarisco.backend.service;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.puntomarisco.backend.dto.MesaActualizada;
 import com.puntomarisco.backend.model.Mesa;
 import com.puntomarisco.backend.repository.MesaRepository;
+import com.puntomarisco.backend.repository.PedidoRepository;
+
+import jakarta.annotation.PostConstruct;
 
 @Service
 public class MesaService {
@@ -15,27 +22,89 @@ public class MesaService {
     @Autowired
     private MesaRepository mesaRepo;
 
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    @Autowired
+    private BloqueoMesas bloqueoMesas;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EventosPedidos eventosPedidos;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${lecturas.vigencia-ms:0}")
+    private long vigenciaLecturasMs;
+
+    // Listado de mesas en JSON, compartido entre las pantallas que lo piden a la vez
+    private LecturaCompartida listado;
+
+    @PostConstruct
+    public void iniciar() {
+        listado = new LecturaCompartida(() -> LecturaCompartida.json(objectMapper, obtenerTodasLasMesas()),
+                vigenciaLecturasMs);
+    }
+
     public List<Mesa> obtenerTodasLasMesas() {
         return mesaRepo.findAll();
     }
 
+    public byte[] obtenerTodasLasMesasJson() {
+        return listado.obtener();
+    }
+
+    // Llamar tras cualquier cambio en las mesas (también el estado que cambian los pedidos)
+    public void invalidarListado() {
+        listado.invalidar();
+    }
+
     public Mesa crearMesa(Mesa mesa) {
-        return mesaRepo.save(mesa);
+        Mesa guardada = mesaRepo.save(mesa);
+        listado.invalidar();
+        catalogoCache.registrarMesa(guardada);
+        return guardada;
     }
 
+    // Los pedidos abiertos siguen a la mesa (por mesa_id) y toman el nombre nuevo
     public ResponseEntity<Mesa> renombrarMesa(Long id, Mesa datos) {
-        return mesaRepo.findById(id).map(mesa -> {
-            mesa.setNombre(datos.getNombre());
-            mesaRepo.save(mesa);
-            return ResponseEntity.ok(mesa);
-        }).orElse(ResponseEntity.notFound().build());
+        Mesa actual = mesaRepo.findById(id).orElse(null);
+        if (actual == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String anterior = actual.getNombre();
+        Mesa renombrada = bloqueoMesas.ejecutar(List.of(String.valueOf(anterior), String.valueOf(datos.getNombre())),
+                () -> transactionTemplate.execute(status -> mesaRepo.findById(id).map(mesa -> {
+                    mesa.setNombre(datos.getNombre());
+                    Mesa guardada = mesaRepo.saveAndFlush(mesa);
+                    pedidoRepository.renombrarMesaAbiertos(id, guardada.getNombre());
+                    if (eventosPedidos.isListo()) {
+                        eventosPedidos.mesaActualizada(new MesaActualizada(guardada.getNombre(), guardada.getEstado(),
+                                pedidoRepository.findAbiertosConDetalles(guardada.getNombre()), List.of()));
+                    }
+                    return guardada;
+                }).orElse(null)));
+        if (renombrada == null) {
+            return ResponseEntity.notFound().build();
+        }
+        listado.invalidar();
+        catalogoCache.olvidarMesa(anterior);
+        catalogoCache.registrarMesa(renombrada);
+        return ResponseEntity.ok(renombrada);
     }
 
     public ResponseEntity<Void> eliminarMesa(Long id) {
-        if (mesaRepo.existsById(id)) {
+        return mesaRepo.findById(id).map(mesa -> {
             mesaRepo.deleteById(id);
-            return ResponseEntity.noContent().build();
-        }
-        return ResponseEntity.notFound().build();
+            listado.invalidar();
+            catalogoCache.olvidarMesa(mesa.getNombre());
+            return ResponseEntity.noContent().<Void>build();
+        }).orElse(ResponseEntity.notFound().build());
     }
 }
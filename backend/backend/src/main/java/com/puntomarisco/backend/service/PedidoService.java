@@ -1,21 +1,48 @@
 package com.puntomarisco.backend.service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
+import org.hibernate.StaleStateException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.puntomarisco.backend.controller.SSEController;
+import com.puntomarisco.backend.dto.CambioEstado;
+import com.puntomarisco.backend.dto.CuentaMesa;
+import com.puntomarisco.backend.dto.LineaCuenta;
+import com.puntomarisco.backend.dto.MesaActualizada;
+import com.puntomarisco.backend.dto.ResultadoCambioEstado;
 import com.puntomarisco.backend.model.DetallePedido;
 import com.puntomarisco.backend.model.Mesa;
 import com.puntomarisco.backend.model.Pedido;
 import com.puntomarisco.backend.repository.MesaRepository;
 import com.puntomarisco.backend.repository.PedidoRepository;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.OptimisticLockException;
+
 @Service
 @Transactional
 public class PedidoService {
@@ -31,25 +58,88 @@ public class PedidoService {
     @Autowired
     private SSEController sseController;
 
+    @Autowired
+    private AnaliticaSnapshot analiticaSnapshot;
+
+    @Autowired
+    private TiemposCocinaService tiemposCocinaService;
+
+    @Autowired
+    private BloqueoMesas bloqueoMesas;
+
+    @Autowired
+    private EstadoCajaService estadoCajaService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    @Autowired
+    private EventosPedidos eventosPedidos;
+
+    @Autowired
+    private MesaService mesaService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${lecturas.vigencia-ms:0}")
+    private long vigenciaLecturasMs;
+
+    // Reintentos ante conflicto de versión con otro nodo
+    private static final int MAX_INTENTOS_VERSION = 3;
+
+    // Pedidos del día en JSON, compartidos entre las pantallas que los piden a la vez
+    private LecturaCompartida pedidosDelDia;
+
+    @PostConstruct
+    public void iniciar() {
+        TransactionTemplate lectura = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        lectura.setReadOnly(true);
+        pedidosDelDia = new LecturaCompartida(
+                () -> lectura.execute(status -> LecturaCompartida.json(objectMapper, obtenerPedidosDelDia())),
+                vigenciaLecturasMs);
+    }
+
+    // Las modificaciones toman el lock de la mesa antes de abrir la transacción y lo sueltan tras el commit
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Pedido guardarPedidoConDetalles(Pedido pedido) {
+        return conCatalogoVigente(pedido.getMesa(), pedido.getDetalles(),
+                () -> enMesa(pedido.getMesa(), () -> guardarPedidoBloqueado(pedido)));
+    }
+
+    private Pedido guardarPedidoBloqueado(Pedido pedido) {
         try {
             logger.info("Guardando nuevo pedido para mesa: {}", pedido.getMesa());
             
-            pedido.setHora(LocalDateTime.now());
+            // Un intento revertido (conflicto de versión) deja ids y versión que la base de datos
+            // nunca confirmó; con ellos save() haría merge en lugar de insertar
+            pedido.setId(null);
+            pedido.setVersion(0);
+            if (pedido.getDetalles() != null) {
+                for (DetallePedido detalle : pedido.getDetalles()) {
+                    detalle.setId(null);
+                }
+            }
+            
+            // Los pedidos que pasaron por el journal local conservan la hora en que se recibieron
+            if (pedido.getClaveLocal() == null || pedido.getHora() == null) {
+                pedido.setHora(LocalDateTime.now());
+            }
             pedido.setEstado(Pedido.EstadoPedido.EN_PROCESO); // Automáticamente en proceso
             pedido.setFacturado(false);
+            pedido.setMesaId(catalogoCache.idMesa(pedido.getMesa()));
 
             // Calcular total
-            double total = 0.0;
             if (pedido.getDetalles() != null) {
                 for (DetallePedido detalle : pedido.getDetalles()) {
                     detalle.setPedido(pedido);
-                    if (detalle.getPrecio() != null && detalle.getCantidad() != null) {
-                        total += detalle.getPrecio() * detalle.getCantidad();
-                    }
+                    detalle.setPlatoId(catalogoCache.idPlato(detalle.getPlato()));
                 }
             }
-            pedido.setTotal(total);
+            pedido.setTotalCentimos(totalCentimos(pedido.getDetalles()));
 
             // Generar QR para el pedido
             String qrUrl = generarQRPedido(pedido);
@@ -57,17 +147,21 @@ public class PedidoService {
 
             Pedido pedidoGuardado = pedidoRepository.save(pedido);
             logger.info("Pedido guardado exitosamente con ID: {}", pedidoGuardado.getId());
+            tiemposCocinaService.registrarTransicion(pedidoGuardado, null, pedidoGuardado.getEstado());
+            eventosPedidos.creado(pedidoGuardado);
 
             // Cambiar estado de mesa a OCUPADA
             cambiarEstadoMesa(pedido.getMesa(), Mesa.EstadoMesa.OCUPADA);
 
-            // Enviar el pedido a todos los clientes conectados via SSE
-            try {
-                sseController.enviarNuevoPedido(pedidoGuardado);
-                logger.info("Pedido enviado via SSE a {} conexiones activas", sseController.getActiveConnections());
-            } catch (Exception sseException) {
-                logger.error("Error al enviar pedido via SSE: {}", sseException.getMessage(), sseException);
-            }
+            // Enviar el pedido a todos los clientes conectados via SSE, solo si el intento se confirma
+            ejecutarTrasCommit(() -> {
+                try {
+                    sseController.enviarNuevoPedido(pedidoGuardado);
+                    logger.info("Pedido enviado via SSE a {} conexiones activas", sseController.getActiveConnections());
+                } catch (Exception sseException) {
+                    logger.error("Error al enviar pedido via SSE: {}", sseException.getMessage(), sseException);
+                }
+            });
 
             return pedidoGuardado;
             
@@ -77,7 +171,21 @@ public class PedidoService {
         }
     }
 
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Pedido actualizarPedido(Long id, Pedido pedidoActualizado) {
+        // El estado de cada línea se decide una vez: un intento fallido deja IDs en los detalles
+        if (pedidoActualizado.getDetalles() != null) {
+            for (DetallePedido detalle : pedidoActualizado.getDetalles()) {
+                detalle.setEstado(detalle.getId() == null
+                        ? DetallePedido.EstadoDetalle.AGREGADO
+                        : DetallePedido.EstadoDetalle.EDITADO);
+            }
+        }
+        return conCatalogoVigente(null, pedidoActualizado.getDetalles(),
+                () -> enMesaDePedido(id, () -> actualizarPedidoBloqueado(id, pedidoActualizado)));
+    }
+
+    private Pedido actualizarPedidoBloqueado(Long id, Pedido pedidoActualizado) {
         try {
             logger.info("Actualizando pedido con ID: {}", id);
             
@@ -92,18 +200,10 @@ public class PedidoService {
             // Preparar nuevos detalles
             if (pedidoActualizado.getDetalles() != null) {
                 for (DetallePedido detalle : pedidoActualizado.getDetalles()) {
-                    // Establecer el estado apropiado
-                    if (detalle.getId() == null) {
-                        // Nuevo detalle
-                        detalle.setEstado(DetallePedido.EstadoDetalle.AGREGADO);
-                    } else {
-                        // Detalle existente modificado
-                        detalle.setEstado(DetallePedido.EstadoDetalle.EDITADO);
-                    }
-                    
                     // Limpiar el ID para forzar la creación de nuevos registros
                     detalle.setId(null);
                     detalle.setPedido(pedidoExistente);
+                    detalle.setPlatoId(catalogoCache.idPlato(detalle.getPlato()));
                 }
                 
                 // Agregar los nuevos detalles
@@ -111,28 +211,22 @@ public class PedidoService {
             }
             
             // Recalcular total
-            double total = 0.0;
-            if (pedidoExistente.getDetalles() != null) {
-                for (DetallePedido detalle : pedidoExistente.getDetalles()) {
-                    if (detalle.getPrecio() != null && detalle.getCantidad() != null && 
-                        detalle.getEstado() != DetallePedido.EstadoDetalle.CANCELADO) {
-                        total += detalle.getPrecio() * detalle.getCantidad();
-                    }
-                }
-            }
-            pedidoExistente.setTotal(total);
+            pedidoExistente.setTotalCentimos(totalCentimos(pedidoExistente.getDetalles()));
             
             // Guardar el pedido actualizado
             Pedido pedidoGuardado = pedidoRepository.save(pedidoExistente);
             logger.info("Pedido actualizado exitosamente con ID: {}", pedidoGuardado.getId());
+            eventosPedidos.lineasCambiadas(pedidoGuardado);
             
             // Enviar notificación de actualización via SSE
-            try {
-                sseController.enviarNuevoPedido(pedidoGuardado);
-                logger.info("Actualización de pedido enviada via SSE");
-            } catch (Exception sseException) {
-                logger.error("Error al enviar actualización via SSE: {}", sseException.getMessage(), sseException);
-            }
+            ejecutarTrasCommit(() -> {
+                try {
+                    sseController.enviarNuevoPedido(pedidoGuardado);
+                    logger.info("Actualización de pedido enviada via SSE");
+                } catch (Exception sseException) {
+                    logger.error("Error al enviar actualización via SSE: {}", sseException.getMessage(), sseException);
+                }
+            });
             
             return pedidoGuardado;
             
@@ -142,28 +236,20 @@ public class PedidoService {
         }
     }
 
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Pedido facturarPedido(Long id) {
+        return enMesaDePedido(id, () -> facturarPedidoBloqueado(id));
+    }
+
+    private Pedido facturarPedidoBloqueado(Long id) {
         try {
             logger.info("Facturando pedido con ID: {}", id);
-            
-            Pedido pedido = pedidoRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Pedido no encontrado con ID: " + id));
-            
-            pedido.setEstado(Pedido.EstadoPedido.FACTURADO);
-            pedido.setFacturado(true);
-            
-            Pedido pedidoGuardado = pedidoRepository.save(pedido);
-            
-            // Verificar si hay más pedidos activos en la mesa
-            List<Pedido> pedidosActivosMesa = pedidoRepository.findByMesaAndFacturadoFalse(pedido.getMesa());
-            if (pedidosActivosMesa.isEmpty()) {
-                // Cambiar estado de mesa a LIBRE solo si no hay más pedidos activos
-                cambiarEstadoMesa(pedido.getMesa(), Mesa.EstadoMesa.LIBRE);
-            }
-            
+            Pedido pedidoGuardado = facturarEnMesa(id, null);
             logger.info("Pedido facturado exitosamente");
             return pedidoGuardado;
             
+        } catch (TransicionEstadoException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error al facturar pedido {}: {}", id, e.getMessage(), e);
             throw new RuntimeException("Error al facturar el pedido", e);
@@ -171,44 +257,193 @@ public class PedidoService {
     }
 
     // Nuevo método para facturar con método de pago
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Pedido facturarPedidoConPago(Long id, String metodoPago) {
+        return enMesaDePedido(id, () -> facturarPedidoConPagoBloqueado(id, metodoPago));
+    }
+
+    private Pedido facturarPedidoConPagoBloqueado(Long id, String metodoPago) {
         try {
             logger.info("Facturando pedido con ID: {} y método de pago: {}", id, metodoPago);
             
-            Pedido pedido = pedidoRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Pedido no encontrado con ID: " + id));
-            
             // Establecer método de pago
+            Pedido.MetodoPago metodoEnum;
             try {
-                Pedido.MetodoPago metodoEnum = Pedido.MetodoPago.valueOf(metodoPago.toUpperCase());
-                pedido.setMetodoPago(metodoEnum);
+                metodoEnum = Pedido.MetodoPago.valueOf(metodoPago.toUpperCase());
             } catch (IllegalArgumentException e) {
                 logger.warn("Método de pago no válido: {}, usando EFECTIVO por defecto", metodoPago);
-                pedido.setMetodoPago(Pedido.MetodoPago.EFECTIVO);
-            }
-            
-            pedido.setEstado(Pedido.EstadoPedido.FACTURADO);
-            pedido.setFacturado(true);
-            
-            Pedido pedidoGuardado = pedidoRepository.save(pedido);
-            
-            // Verificar si hay más pedidos activos en la mesa
-            List<Pedido> pedidosActivosMesa = pedidoRepository.findByMesaAndFacturadoFalse(pedido.getMesa());
-            if (pedidosActivosMesa.isEmpty()) {
-                // Cambiar estado de mesa a LIBRE solo si no hay más pedidos activos
-                cambiarEstadoMesa(pedido.getMesa(), Mesa.EstadoMesa.LIBRE);
+                metodoEnum = Pedido.MetodoPago.EFECTIVO;
             }
             
+            Pedido pedidoGuardado = facturarEnMesa(id, metodoEnum);
             logger.info("Pedido facturado exitosamente con método de pago: {}", metodoPago);
             return pedidoGuardado;
             
+        } catch (TransicionEstadoException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error al facturar pedido {} con pago: {}", id, e.getMessage(), e);
             throw new RuntimeException("Error al facturar el pedido", e);
         }
     }
 
+    private Pedido facturarEnMesa(Long id, Pedido.MetodoPago metodoPago) {
+        Pedido pedidoGuardado = transicionarEstado(id, Pedido.EstadoPedido.FACTURADO, metodoPago);
+        
+        estadoCajaService.registrarVenta(pedidoGuardado.getTotalCentimos());
+        analiticaSnapshot.registrarFacturado(pedidoGuardado);
+        tiemposCocinaService.registrarTransicion(pedidoGuardado, null, pedidoGuardado.getEstado());
+        eventosPedidos.facturado(pedidoGuardado);
+        
+        // Cambiar estado de mesa a LIBRE solo si no hay más pedidos activos
+        if (!pedidoRepository.existsByMesaAndFacturadoFalse(pedidoGuardado.getMesa())) {
+            cambiarEstadoMesa(pedidoGuardado.getMesa(), Mesa.EstadoMesa.LIBRE);
+        }
+        return pedidoGuardado;
+    }
+
+    /**
+     * Factura en una sola transacción todos los pedidos abiertos de una mesa: un UPDATE en bloque
+     * de los pedidos, uno del total de caja y uno del estado de la mesa.
+     * @return Cuenta consolidada, o null si la mesa no tiene pedidos por facturar
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CuentaMesa facturarMesa(String mesa, String metodoPago) {
+        return enMesa(mesa, () -> facturarMesaBloqueado(mesa, metodoPago));
+    }
+
+    private CuentaMesa facturarMesaBloqueado(String mesa, String metodoPago) {
+        try {
+            logger.info("Facturando todos los pedidos de la mesa {} con método de pago: {}", mesa, metodoPago);
+            
+            Pedido.MetodoPago metodoEnum = Pedido.MetodoPago.EFECTIVO;
+            if (metodoPago != null) {
+                try {
+                    metodoEnum = Pedido.MetodoPago.valueOf(metodoPago.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    logger.warn("Método de pago no válido: {}, usando EFECTIVO por defecto", metodoPago);
+                }
+            }
+            
+            Set<Pedido.EstadoPedido> permitidos = Pedido.EstadoPedido.FACTURADO.predecesores();
+            List<Pedido> abiertos = pedidoRepository.findAbiertosConDetalles(mesa);
+            List<Pedido> facturables = new ArrayList<>(abiertos.size());
+            for (Pedido pedido : abiertos) {
+                if (permitidos.contains(pedido.getEstado())) {
+                    facturables.add(pedido);
+                }
+            }
+            if (facturables.isEmpty()) {
+                logger.info("La mesa {} no tiene pedidos por facturar", mesa);
+                return null;
+            }
+            
+            List<Long> ids = facturables.stream().map(Pedido::getId).toList();
+            int filas = pedidoRepository.facturarTodosSi(ids, Pedido.EstadoPedido.FACTURADO, metodoEnum, permitidos);
+            if (filas != ids.size()) {
+                // Otro nodo cambió algún pedido entre la lectura y el UPDATE: se repite con datos frescos
+                throw new OptimisticLockingFailureException("Pedidos de la mesa " + mesa + " modificados durante la facturación");
+            }
+            
+            CuentaMesa cuenta = construirCuenta(mesa, facturables, metodoEnum);
+            estadoCajaService.registrarVenta(cuenta.getTotalCentimos());
+            if (facturables.size() == abiertos.size()) {
+                cambiarEstadoMesa(mesa, Mesa.EstadoMesa.LIBRE);
+            }
+            
+            // Las entidades ya están desacopladas tras el UPDATE en bloque; se reflejan los cambios para los registros
+            for (Pedido pedido : facturables) {
+                Pedido.EstadoPedido estadoAnterior = pedido.getEstado();
+                pedido.setEstado(Pedido.EstadoPedido.FACTURADO);
+                pedido.setFacturado(true);
+                pedido.setMetodoPago(metodoEnum);
+                analiticaSnapshot.registrarFacturado(pedido);
+                tiemposCocinaService.registrarTransicion(pedido, estadoAnterior, Pedido.EstadoPedido.FACTURADO);
+                eventosPedidos.facturado(pedido);
+            }
+            
+            logger.info("Mesa {} facturada: {} pedidos por S/ {}", mesa, ids.size(), cuenta.getTotal());
+            return cuenta;
+            
+        } catch (Exception e) {
+            logger.error("Error al facturar la mesa {}: {}", mesa, e.getMessage(), e);
+            throw new RuntimeException("Error al facturar la mesa", e);
+        }
+    }
+
+    // Suma en céntimos de las líneas no canceladas
+    static long totalCentimos(List<DetallePedido> detalles) {
+        long total = 0;
+        if (detalles != null) {
+            for (DetallePedido detalle : detalles) {
+                if (detalle.getEstado() != DetallePedido.EstadoDetalle.CANCELADO) {
+                    total += detalle.subtotalCentimos();
+                }
+            }
+        }
+        return total;
+    }
+
+    // Agrupa las líneas no canceladas de todos los pedidos por plato y precio
+    private static CuentaMesa construirCuenta(String mesa, List<Pedido> pedidos, Pedido.MetodoPago metodoPago) {
+        Map<String, long[]> lineas = new LinkedHashMap<>();
+        Map<String, String> platos = new LinkedHashMap<>();
+        long totalCentimos = 0;
+        for (Pedido pedido : pedidos) {
+            if (pedido.getDetalles() == null) {
+                continue;
+            }
+            for (DetallePedido detalle : pedido.getDetalles()) {
+                if (detalle.getEstado() == DetallePedido.EstadoDetalle.CANCELADO || detalle.getCantidad() == null) {
+                    continue;
+                }
+                long precio = detalle.getPrecioCentimos();
+                String clave = detalle.getPlato() + "|" + precio;
+                platos.putIfAbsent(clave, detalle.getPlato());
+                // [cantidad, precio unitario en céntimos]
+                long[] linea = lineas.computeIfAbsent(clave, k -> new long[] { 0, precio });
+                linea[0] += detalle.getCantidad();
+                totalCentimos += precio * detalle.getCantidad();
+            }
+        }
+        List<LineaCuenta> resultado = new ArrayList<>(lineas.size());
+        lineas.forEach((clave, linea) -> resultado.add(new LineaCuenta(platos.get(clave), (int) linea[0],
+                linea[1], linea[0] * linea[1])));
+        List<Long> ids = pedidos.stream().map(Pedido::getId).toList();
+        return new CuentaMesa(mesa, ids, resultado, totalCentimos, metodoPago, LocalDateTime.now());
+    }
+
+    /**
+     * Cuenta consolidada de los pedidos abiertos de una mesa, agregada en la base de datos.
+     * Con una lista de pedidos sirve como vista previa de una cuenta dividida.
+     * @return Cuenta sin método de pago, o null si no hay pedidos por facturar
+     */
+    @Transactional(readOnly = true)
+    public CuentaMesa obtenerCuentaMesa(String mesa, List<Long> pedidos) {
+        try {
+            logger.debug("Calculando cuenta de la mesa: {}", mesa);
+            List<Long> ids = pedidoRepository.findIdsAbiertos(mesa, Pedido.EstadoPedido.FACTURADO.predecesores());
+            if (pedidos != null && !pedidos.isEmpty()) {
+                ids = ids.stream().filter(pedidos::contains).toList();
+            }
+            if (ids.isEmpty()) {
+                return null;
+            }
+            
+            List<LineaCuenta> lineas = pedidoRepository.agregarCuenta(ids, DetallePedido.EstadoDetalle.CANCELADO);
+            long totalCentimos = 0;
+            for (LineaCuenta linea : lineas) {
+                totalCentimos += linea.getSubtotalCentimos();
+            }
+            return new CuentaMesa(mesa, ids, lineas, totalCentimos, null, LocalDateTime.now());
+        } catch (Exception e) {
+            logger.error("Error al calcular la cuenta de la mesa {}: {}", mesa, e.getMessage(), e);
+            throw new RuntimeException("Error al calcular la cuenta de la mesa", e);
+        }
+    }
+
     // Nuevo método para generar QR
+    // Sin readOnly: se pide justo después de crear el pedido y la réplica puede no tenerlo aún
     public String generarQRPedido(Long pedidoId) {
         try {
             Pedido pedido = pedidoRepository.findById(pedidoId).orElse(null);
@@ -247,6 +482,8 @@ public class PedidoService {
         }
     }
 
+    // Lecturas: flush MANUAL y entidades sin copia para dirty checking; van a la réplica si existe
+    @Transactional(readOnly = true)
     public List<Pedido> obtenerPedidos() {
         try {
             logger.debug("Obteniendo lista de todos los pedidos");
@@ -259,13 +496,34 @@ public class PedidoService {
         }
     }
 
+    /**
+     * Pedidos del día ya serializados. Sin transacción propia: quien espera una consulta en curso
+     * no ocupa una conexión; la consulta abre la suya de solo lectura.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public byte[] obtenerPedidosDelDiaJson() {
+        return pedidosDelDia.obtener();
+    }
+
+    @Transactional(readOnly = true)
     public List<Pedido> obtenerPedidosDelDia() {
+        return obtenerPedidosDelDia(true);
+    }
+
+    /**
+     * @param conDetalles Si la respuesta incluye las líneas: se traen en la misma consulta; si no,
+     *                    no se cargan
+     */
+    @Transactional(readOnly = true)
+    public List<Pedido> obtenerPedidosDelDia(boolean conDetalles) {
         try {
             logger.debug("Obteniendo pedidos del día actual");
             LocalDateTime inicioDelDia = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0).withNano(0);
             LocalDateTime finDelDia = LocalDateTime.now().withHour(23).withMinute(59).withSecond(59).withNano(999999999);
             
-            List<Pedido> pedidos = pedidoRepository.findByHoraBetween(inicioDelDia, finDelDia);
+            List<Pedido> pedidos = conDetalles
+                    ? pedidoRepository.findConDetallesByHoraBetween(inicioDelDia, finDelDia)
+                    : pedidoRepository.findByHoraBetween(inicioDelDia, finDelDia);
             logger.debug("Se encontraron {} pedidos del día", pedidos.size());
             return pedidos;
         } catch (Exception e) {
@@ -274,6 +532,7 @@ public class PedidoService {
         }
     }
 
+    @Transactional(readOnly = true)
     public List<Pedido> obtenerPorMesa(String mesa) {
         try {
             logger.debug("Obteniendo pedidos activos para mesa: {}", mesa);
@@ -286,6 +545,7 @@ public class PedidoService {
         }
     }
 
+    // En la primaria: el resumen se abre tras crear o modificar el pedido, antes de que llegue a la réplica
     public Pedido obtenerPorId(Long id) {
         try {
             logger.debug("Obteniendo pedido con ID: {}", id);
@@ -296,41 +556,391 @@ public class PedidoService {
         }
     }
 
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Pedido actualizarEstadoPedido(Long pedidoId, String nuevoEstado) {
+        return enMesaDePedido(pedidoId, () -> actualizarEstadoPedidoBloqueado(pedidoId, nuevoEstado));
+    }
+
+    private Pedido actualizarEstadoPedidoBloqueado(Long pedidoId, String nuevoEstado) {
         try {
             logger.info("Actualizando estado del pedido {} a: {}", pedidoId, nuevoEstado);
             
-            Pedido pedido = pedidoRepository.findById(pedidoId)
-                    .orElseThrow(() -> new RuntimeException("Pedido no encontrado con ID: " + pedidoId));
-            
-            // Convertir string a enum si es necesario
+            Pedido.EstadoPedido estadoEnum;
             try {
-                Pedido.EstadoPedido estadoEnum = Pedido.EstadoPedido.valueOf(nuevoEstado.toUpperCase());
-                pedido.setEstado(estadoEnum);
+                estadoEnum = Pedido.EstadoPedido.valueOf(nuevoEstado.toUpperCase());
             } catch (IllegalArgumentException e) {
-                logger.warn("Estado no válido: {}, usando como string", nuevoEstado);
-                // Mantener compatibilidad con estados string
+                // Mantener compatibilidad: un estado desconocido deja el pedido como está
+                logger.warn("Estado no válido: {}, se ignora", nuevoEstado);
+                return pedidoRepository.findById(pedidoId)
+                        .orElseThrow(() -> new RuntimeException("Pedido no encontrado con ID: " + pedidoId));
+            }
+            if (estadoEnum == Pedido.EstadoPedido.FACTURADO) {
+                return facturarEnMesa(pedidoId, null);
             }
             
-            Pedido pedidoActualizado = pedidoRepository.save(pedido);
+            Pedido pedidoActualizado = transicionarEstado(pedidoId, estadoEnum, null);
+            tiemposCocinaService.registrarTransicion(pedidoActualizado, null, pedidoActualizado.getEstado());
+            eventosPedidos.estadoCambiado(pedidoActualizado);
             
             // Notificar cambio de estado via SSE
-            try {
-                sseController.enviarNuevoPedido(pedidoActualizado);
-                logger.info("Cambio de estado enviado via SSE");
-            } catch (Exception sseException) {
-                logger.error("Error al enviar cambio de estado via SSE: {}", sseException.getMessage(), sseException);
-            }
+            ejecutarTrasCommit(() -> {
+                try {
+                    sseController.enviarNuevoPedido(pedidoActualizado);
+                    logger.info("Cambio de estado enviado via SSE");
+                } catch (Exception sseException) {
+                    logger.error("Error al enviar cambio de estado via SSE: {}", sseException.getMessage(), sseException);
+                }
+            });
             
             return pedidoActualizado;
             
+        } catch (TransicionEstadoException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error al actualizar estado del pedido {}: {}", pedidoId, e.getMessage(), e);
             throw new RuntimeException("Error al actualizar el estado del pedido", e);
         }
     }
 
+    /**
+     * Cambia el estado con un UPDATE condicional (WHERE estado IN predecesores permitidos),
+     * sin leer antes el pedido. Solo si no se actualiza ninguna fila se consulta el estado,
+     * para distinguir un pedido inexistente de una transición no permitida.
+     * @return Pedido ya en el nuevo estado, con sus detalles
+     * @throws TransicionEstadoException Si la transición no está permitida (también hacia el mismo estado)
+     */
+    private Pedido transicionarEstado(Long pedidoId, Pedido.EstadoPedido nuevo, Pedido.MetodoPago metodoPago) {
+        Set<Pedido.EstadoPedido> permitidos = nuevo.predecesores();
+        
+        int filas;
+        if (permitidos.isEmpty()) {
+            filas = 0;
+        } else if (nuevo != Pedido.EstadoPedido.FACTURADO) {
+            filas = pedidoRepository.actualizarEstadoSi(pedidoId, nuevo, permitidos);
+        } else if (metodoPago != null) {
+            filas = pedidoRepository.facturarConPagoSi(pedidoId, nuevo, metodoPago, permitidos);
+        } else {
+            filas = pedidoRepository.facturarSi(pedidoId, nuevo, permitidos);
+        }
+        if (filas == 0) {
+            Pedido.EstadoPedido actual = pedidoRepository.findEstadoById(pedidoId)
+                    .orElseThrow(() -> new RuntimeException("Pedido no encontrado con ID: " + pedidoId));
+            throw new TransicionEstadoException(pedidoId, actual, nuevo);
+        }
+        return pedidoRepository.findConDetallesByIds(List.of(pedidoId)).get(0);
+    }
+
+    /**
+     * Aplica varios cambios de estado de cocina en una transacción: un UPDATE condicional por
+     * estado destino y un único evento SSE con todos los pedidos modificados.
+     * La facturación no se admite aquí porque afecta a la caja y a la mesa.
+     * @return Resultado de cada elemento, en el orden recibido
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<ResultadoCambioEstado> actualizarEstados(List<CambioEstado> cambios) {
+        logger.info("Aplicando {} cambios de estado en lote", cambios.size());
+        
+        // Validación previa sin tocar la base de datos
+        ResultadoCambioEstado[] resultados = new ResultadoCambioEstado[cambios.size()];
+        Map<Long, Pedido.EstadoPedido> destinos = new LinkedHashMap<>();
+        Set<Long> repetidos = new HashSet<>();
+        for (int i = 0; i < cambios.size(); i++) {
+            CambioEstado cambio = cambios.get(i);
+            resultados[i] = new ResultadoCambioEstado(cambio.getPedidoId(), cambio.getEstado(), null, false, null);
+            Pedido.EstadoPedido destino = null;
+            try {
+                destino = cambio.getEstado() != null ? Pedido.EstadoPedido.valueOf(cambio.getEstado().toUpperCase()) : null;
+            } catch (IllegalArgumentException e) {
+                // se informa abajo
+            }
+            if (cambio.getPedidoId() == null || destino == null) {
+                resultados[i].setMotivo("Pedido o estado no válido");
+            } else if (destino == Pedido.EstadoPedido.FACTURADO) {
+                resultados[i].setMotivo("La facturación no se admite en lote");
+            } else if (destinos.putIfAbsent(cambio.getPedidoId(), destino) != null) {
+                repetidos.add(cambio.getPedidoId());
+            }
+        }
+        repetidos.forEach(destinos::remove);
+        
+        Map<Long, String> mesas;
+        Map<Long, Pedido.EstadoPedido> anteriores = new HashMap<>();
+        Set<Long> aplicados = new HashSet<>();
+        List<Pedido> modificados;
+        while (true) {
+            mesas = mesasDePedidos(destinos.keySet());
+            destinos.keySet().retainAll(mesas.keySet());
+            if (destinos.isEmpty()) {
+                modificados = List.of();
+                break;
+            }
+            Set<String> bloqueadas = new HashSet<>(mesas.values());
+            try {
+                modificados = enMesas(bloqueadas, () -> aplicarEstados(destinos, bloqueadas, anteriores, aplicados));
+                break;
+            } catch (MesaCambiadaException e) {
+                logger.debug("Pedido movido a la mesa {} antes de tomar los locks del lote", e.mesa);
+            }
+        }
+        
+        for (ResultadoCambioEstado resultado : resultados) {
+            Long id = resultado.getPedidoId();
+            if (resultado.getMotivo() != null) {
+                continue;
+            }
+            resultado.setEstadoAnterior(anteriores.get(id));
+            if (repetidos.contains(id)) {
+                resultado.setMotivo("Pedido repetido en la solicitud");
+            } else if (!mesas.containsKey(id)) {
+                resultado.setMotivo("Pedido no encontrado");
+            } else if (aplicados.contains(id)) {
+                resultado.setAplicado(true);
+            } else {
+                resultado.setMotivo("Transición no permitida desde " + anteriores.get(id));
+            }
+        }
+        
+        // Un solo evento con todos los pedidos cambiados, tras el commit
+        if (!modificados.isEmpty()) {
+            try {
+                sseController.enviarPedidosActualizados(modificados);
+            } catch (Exception sseException) {
+                logger.error("Error al enviar cambios de estado via SSE: {}", sseException.getMessage(), sseException);
+            }
+        }
+        logger.info("Cambios de estado en lote: {} aplicados de {}", aplicados.size(), cambios.size());
+        return List.of(resultados);
+    }
+
+    private List<Pedido> aplicarEstados(Map<Long, Pedido.EstadoPedido> destinos, Set<String> bloqueadas,
+                                        Map<Long, Pedido.EstadoPedido> anteriores, Set<Long> aplicados) {
+        // Un pedido trasladado a otra mesa entre la consulta y el lock obliga a bloquear de nuevo
+        for (String mesa : mesasDePedidos(destinos.keySet()).values()) {
+            if (!bloqueadas.contains(mesa)) {
+                throw new MesaCambiadaException(mesa);
+            }
+        }
+        anteriores.clear();
+        aplicados.clear();
+        for (Object[] fila : pedidoRepository.findEstadosByIds(destinos.keySet())) {
+            anteriores.put((Long) fila[0], (Pedido.EstadoPedido) fila[1]);
+        }
+        
+        // Agrupar por estado destino los cambios permitidos por la tabla de transiciones
+        Map<Pedido.EstadoPedido, List<Long>> porDestino = new EnumMap<>(Pedido.EstadoPedido.class);
+        destinos.forEach((id, destino) -> {
+            if (destino.predecesores().contains(anteriores.get(id))) {
+                porDestino.computeIfAbsent(destino, d -> new ArrayList<>()).add(id);
+            }
+        });
+        
+        for (Map.Entry<Pedido.EstadoPedido, List<Long>> grupo : porDestino.entrySet()) {
+            Pedido.EstadoPedido destino = grupo.getKey();
+            List<Long> ids = grupo.getValue();
+            int filas = pedidoRepository.actualizarEstadosSi(ids, destino, destino.predecesores());
+            if (filas == ids.size()) {
+                aplicados.addAll(ids);
+            } else {
+                // Otro nodo cambió alguno entre medias: se comprueba cuáles quedaron en el destino
+                for (Object[] fila : pedidoRepository.findEstadosByIds(ids)) {
+                    if (fila[1] == destino) {
+                        aplicados.add((Long) fila[0]);
+                    }
+                }
+            }
+        }
+        if (aplicados.isEmpty()) {
+            return List.of();
+        }
+        
+        List<Pedido> modificados = pedidoRepository.findConDetallesByIds(aplicados);
+        for (Pedido pedido : modificados) {
+            tiemposCocinaService.registrarTransicion(pedido, anteriores.get(pedido.getId()), pedido.getEstado());
+            eventosPedidos.estadoCambiado(pedido);
+        }
+        return modificados;
+    }
+
+    /**
+     * Pasa todos los pedidos abiertos de una mesa a otra con un solo UPDATE
+     * @return Estado final de las dos mesas, en el orden (origen, destino)
+     * @throws IllegalArgumentException Si alguna mesa no existe o el origen no tiene pedidos abiertos
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<MesaActualizada> transferirMesa(String origen, String destino) {
+        validarMesas(origen, destino);
+        List<MesaActualizada> resultado = enMesas(List.of(origen, destino), () -> {
+            int movidos = pedidoRepository.transferirAbiertos(origen, destino, catalogoCache.idMesa(destino));
+            if (movidos == 0) {
+                throw new IllegalArgumentException("La mesa " + origen + " no tiene pedidos abiertos");
+            }
+            logger.info("{} pedidos transferidos de la mesa {} a la mesa {}", movidos, origen, destino);
+            return List.of(mesaActualizada(origen, List.of()), mesaActualizada(destino, List.of()));
+        });
+        notificarMesas(resultado);
+        return resultado;
+    }
+
+    /**
+     * Une la mesa origen a la mesa destino: mueve sus pedidos abiertos y junta en uno solo
+     * los pedidos de la mesa resultante que están en el mismo estado de cocina
+     * @return Estado final de las dos mesas, en el orden (origen, destino)
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<MesaActualizada> unirMesas(String destino, String origen) {
+        validarMesas(origen, destino);
+        List<MesaActualizada> resultado = enMesas(List.of(origen, destino), () -> {
+            int movidos = pedidoRepository.transferirAbiertos(origen, destino, catalogoCache.idMesa(destino));
+            List<Long> eliminados = consolidarPedidos(destino);
+            logger.info("Mesa {} unida a {}: {} pedidos movidos, {} consolidados", origen, destino, movidos, eliminados.size());
+            return List.of(mesaActualizada(origen, List.of()), mesaActualizada(destino, eliminados));
+        });
+        notificarMesas(resultado);
+        return resultado;
+    }
+
+    /**
+     * Separa líneas de un pedido en un pedido nuevo, en la misma mesa o en otra.
+     * El pedido nuevo conserva la hora y el estado de cocina del original.
+     * @return Estado final de la mesa del pedido y, si es distinta, de la mesa destino
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<MesaActualizada> dividirPedido(Long pedidoId, List<Long> detalles, String mesaDestino) {
+        if (detalles == null || detalles.isEmpty()) {
+            throw new IllegalArgumentException("Seleccione las líneas a separar");
+        }
+        String origen = mesaDePedido(pedidoId);
+        while (true) {
+            try {
+                List<MesaActualizada> resultado = dividirPedidoEnMesas(pedidoId, detalles, mesaDestino, origen);
+                notificarMesas(resultado);
+                return resultado;
+            } catch (MesaCambiadaException e) {
+                logger.debug("Pedido {} movido de la mesa {} a {} antes de tomar el lock", pedidoId, origen, e.mesa);
+                origen = e.mesa;
+            }
+        }
+    }
+
+    private List<MesaActualizada> dividirPedidoEnMesas(Long pedidoId, List<Long> detalles, String mesaDestino, String origen) {
+        String destino = mesaDestino != null && !mesaDestino.isBlank() ? mesaDestino : origen;
+        if (!destino.equals(origen) && catalogoCache.idMesa(destino) == null) {
+            throw new IllegalArgumentException("Mesa no encontrada: " + destino);
+        }
+        
+        return enMesas(List.of(origen, destino), () -> {
+            comprobarMesa(pedidoId, origen);
+            Pedido original = pedidoRepository.findById(pedidoId)
+                    .orElseThrow(() -> new IllegalArgumentException("Pedido no encontrado con ID: " + pedidoId));
+            if (!Pedido.EstadoPedido.FACTURADO.predecesores().contains(original.getEstado())) {
+                throw new IllegalArgumentException("El pedido " + pedidoId + " no está abierto");
+            }
+            
+            Pedido nuevo = new Pedido();
+            nuevo.setMesa(destino);
+            nuevo.setMesaId(destino.equals(origen) ? original.getMesaId() : catalogoCache.idMesa(destino));
+            nuevo.setHora(original.getHora());
+            nuevo.setEstado(original.getEstado());
+            nuevo.setFacturado(false);
+            nuevo.setTotalCentimos(0);
+            nuevo = pedidoRepository.save(nuevo);
+            Long nuevoId = nuevo.getId();
+            
+            long lineas = pedidoRepository.contarDetalles(pedidoId);
+            int movidas = pedidoRepository.moverDetallesSeleccionados(pedidoId, nuevoId, detalles);
+            if (movidas == 0) {
+                throw new IllegalArgumentException("Ninguna de las líneas pertenece al pedido " + pedidoId);
+            }
+            if (movidas >= lineas) {
+                throw new IllegalArgumentException("El pedido original debe conservar al menos una línea");
+            }
+            pedidoRepository.recalcularTotales(List.of(pedidoId, nuevoId));
+            tiemposCocinaService.registrarTransicion(nuevo, null, nuevo.getEstado());
+            logger.info("{} líneas del pedido {} separadas en el pedido {} (mesa {})", movidas, pedidoId, nuevoId, destino);
+            
+            List<MesaActualizada> mesas = new ArrayList<>(2);
+            mesas.add(mesaActualizada(origen, List.of()));
+            if (!destino.equals(origen)) {
+                mesas.add(mesaActualizada(destino, List.of()));
+            }
+            return mesas;
+        });
+    }
+
+    private void validarMesas(String origen, String destino) {
+        if (origen == null || destino == null || origen.equals(destino)) {
+            throw new IllegalArgumentException("Se necesitan dos mesas distintas");
+        }
+        for (String mesa : List.of(origen, destino)) {
+            if (catalogoCache.idMesa(mesa) == null) {
+                throw new IllegalArgumentException("Mesa no encontrada: " + mesa);
+            }
+        }
+    }
+
+    // Junta en un solo pedido, por estado de cocina, los pedidos abiertos de una mesa
+    private List<Long> consolidarPedidos(String mesa) {
+        List<Long> ids = pedidoRepository.findIdsAbiertos(mesa, Pedido.EstadoPedido.FACTURADO.predecesores());
+        if (ids.size() < 2) {
+            return List.of();
+        }
+        Map<Pedido.EstadoPedido, List<Long>> porEstado = new EnumMap<>(Pedido.EstadoPedido.class);
+        for (Object[] fila : pedidoRepository.findEstadosByIds(ids)) {
+            porEstado.computeIfAbsent((Pedido.EstadoPedido) fila[1], e -> new ArrayList<>()).add((Long) fila[0]);
+        }
+        
+        List<Long> conservados = new ArrayList<>();
+        List<Long> eliminados = new ArrayList<>();
+        for (List<Long> grupo : porEstado.values()) {
+            if (grupo.size() < 2) {
+                continue;
+            }
+            // El más antiguo recibe las líneas de los demás
+            Collections.sort(grupo);
+            List<Long> resto = grupo.subList(1, grupo.size());
+            pedidoRepository.moverDetalles(grupo.get(0), resto);
+            conservados.add(grupo.get(0));
+            eliminados.addAll(resto);
+        }
+        if (eliminados.isEmpty()) {
+            return List.of();
+        }
+        pedidoRepository.deleteAllByIdInBatch(eliminados);
+        pedidoRepository.recalcularTotales(conservados);
+        eliminados.forEach(tiemposCocinaService::olvidarPedido);
+        return eliminados;
+    }
+
+    // Recalcula el estado de la mesa según sus pedidos abiertos y carga esos pedidos para la respuesta y el evento
+    private MesaActualizada mesaActualizada(String mesa, List<Long> eliminados) {
+        Mesa.EstadoMesa estado = pedidoRepository.existsByMesaAndFacturadoFalse(mesa)
+                ? Mesa.EstadoMesa.OCUPADA : Mesa.EstadoMesa.LIBRE;
+        cambiarEstadoMesa(mesa, estado);
+        MesaActualizada resultado = new MesaActualizada(mesa, estado, pedidoRepository.findAbiertosConDetalles(mesa), eliminados);
+        eventosPedidos.mesaActualizada(resultado);
+        return resultado;
+    }
+
+    // Un evento por mesa afectada, tras el commit
+    private void notificarMesas(List<MesaActualizada> mesas) {
+        for (MesaActualizada mesa : mesas) {
+            try {
+                sseController.enviarMesaActualizada(mesa);
+            } catch (Exception sseException) {
+                logger.error("Error al enviar mesa {} via SSE: {}", mesa.getMesa(), sseException.getMessage(), sseException);
+            }
+        }
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void eliminarPedido(Long pedidoId) {
+        enMesaDePedido(pedidoId, () -> {
+            eliminarPedidoBloqueado(pedidoId);
+            return null;
+        });
+    }
+
+    private void eliminarPedidoBloqueado(Long pedidoId) {
         try {
             logger.info("Eliminando pedido con ID: {}", pedidoId);
             
@@ -347,6 +957,8 @@ public class PedidoService {
             }
             
             pedidoRepository.deleteById(pedidoId);
+            tiemposCocinaService.olvidarPedido(pedidoId);
+            eventosPedidos.eliminado(pedidoId);
             logger.info("Pedido eliminado exitosamente");
             
         } catch (Exception e) {
@@ -355,6 +967,7 @@ public class PedidoService {
         }
     }
 
+    @Transactional(readOnly = true)
     public List<Pedido> obtenerPedidosPorEstado(String estado) {
         try {
             logger.debug("Obteniendo pedidos con estado: {}", estado);
@@ -367,14 +980,164 @@ public class PedidoService {
         }
     }
 
+    /**
+     * Ejecuta la acción en su propia transacción con el lock de la mesa tomado. Si otro nodo
+     * modificó el mismo pedido o mesa (conflicto de @Version) se repite con los datos frescos.
+     */
+    private <T> T enMesa(String mesa, Supplier<T> accion) {
+        return bloqueoMesas.ejecutar(mesa, () -> enTransaccion(String.valueOf(mesa), accion));
+    }
+
+    /**
+     * Como enMesa, con la mesa del pedido. La mesa se lee antes de tomar el lock: si con el lock
+     * tomado el pedido ya está en otra (lo movió una transferencia o una división), se suelta y se
+     * repite con la mesa nueva.
+     */
+    private <T> T enMesaDePedido(Long pedidoId, Supplier<T> accion) {
+        String mesa = mesaDePedido(pedidoId);
+        while (true) {
+            String bloqueada = mesa;
+            try {
+                return enMesa(bloqueada, () -> {
+                    comprobarMesa(pedidoId, bloqueada);
+                    return accion.get();
+                });
+            } catch (MesaCambiadaException e) {
+                logger.debug("Pedido {} movido de la mesa {} a {} antes de tomar el lock", pedidoId, bloqueada, e.mesa);
+                mesa = e.mesa;
+            }
+        }
+    }
+
+    // Con el lock tomado: el pedido sigue en la mesa bloqueada
+    private void comprobarMesa(Long pedidoId, String bloqueada) {
+        String actual = mesaDePedido(pedidoId);
+        if (!actual.equals(bloqueada)) {
+            throw new MesaCambiadaException(actual);
+        }
+    }
+
+    // El pedido cambió de mesa entre la lectura y el lock; no sale de este servicio
+    private static final class MesaCambiadaException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final String mesa;
+
+        MesaCambiadaException(String mesa) {
+            super(null, null, false, false);
+            this.mesa = mesa;
+        }
+    }
+
+    private <T> T enMesas(Collection<String> mesas, Supplier<T> accion) {
+        return bloqueoMesas.ejecutar(mesas, () -> enTransaccion(String.valueOf(mesas), accion));
+    }
+
+    private <T> T enTransaccion(String mesas, Supplier<T> accion) {
+        for (int intento = 1; ; intento++) {
+            try {
+                return transactionTemplate.execute(status -> {
+                    pedidosDelDia.invalidar();
+                    return accion.get();
+                });
+            } catch (RuntimeException e) {
+                if (intento >= MAX_INTENTOS_VERSION || !esConflictoVersion(e)) {
+                    throw e;
+                }
+                logger.warn("Conflicto de versión en mesa {}, reintento {}", mesas, intento);
+            }
+        }
+    }
+
+    // Notificaciones de una transacción con reintentos: solo la del intento que se confirma
+    private static void ejecutarTrasCommit(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+
+    private Map<Long, String> mesasDePedidos(Collection<Long> pedidoIds) {
+        Map<Long, String> mesas = new HashMap<>();
+        if (!pedidoIds.isEmpty()) {
+            for (Object[] fila : pedidoRepository.findMesasByIds(pedidoIds)) {
+                mesas.put((Long) fila[0], (String) fila[1]);
+            }
+        }
+        return mesas;
+    }
+
+    private String mesaDePedido(Long pedidoId) {
+        return pedidoRepository.findMesaById(pedidoId)
+                .orElseThrow(() -> new RuntimeException("Pedido no encontrado con ID: " + pedidoId));
+    }
+
+    /**
+     * Un ID de mesa o plato en caché queda obsoleto si otro nodo borra o recrea la fila, y la
+     * clave foránea rechaza el insert. Se olvidan esos nombres y se reintenta una vez, de modo
+     * que el catálogo vuelve a consultarlos en la base de datos.
+     */
+    private <T> T conCatalogoVigente(String mesa, List<DetallePedido> detalles, Supplier<T> accion) {
+        try {
+            return accion.get();
+        } catch (RuntimeException e) {
+            if (!esReferenciaObsoleta(e)) {
+                throw e;
+            }
+            logger.warn("Referencia a mesa o plato obsoleta en caché, se reintenta: {}", e.getMessage());
+            catalogoCache.olvidarMesa(mesa);
+            if (detalles != null) {
+                for (DetallePedido detalle : detalles) {
+                    catalogoCache.olvidarPlato(detalle.getPlato());
+                }
+            }
+            return accion.get();
+        }
+    }
+
+    private static boolean esReferenciaObsoleta(Throwable e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof DataIntegrityViolationException && causa.getMessage() != null) {
+                String mensaje = causa.getMessage().toLowerCase();
+                return mensaje.contains("fk_pedido_mesa") || mensaje.contains("fk_detalle_pedido_plato");
+            }
+        }
+        return false;
+    }
+
+    private static boolean esConflictoVersion(Throwable e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof OptimisticLockingFailureException
+                    || causa instanceof OptimisticLockException
+                    || causa instanceof StaleStateException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Carga la mesa por ID (caché de segundo nivel) y solo escribe si el estado cambia; un UPDATE
+    // en bloque invalidaría la región de mesas entera en cada pedido
     private void cambiarEstadoMesa(String nombreMesa, Mesa.EstadoMesa nuevoEstado) {
         try {
-            Mesa mesa = mesaRepository.findByNombre(nombreMesa);
+            Long mesaId = catalogoCache.idMesa(nombreMesa);
+            Mesa mesa = mesaId != null ? mesaRepository.findById(mesaId).orElse(null) : null;
             if (mesa != null) {
-                mesa.setEstado(nuevoEstado);
-                mesaRepository.save(mesa);
-                logger.info("Estado de mesa {} cambiado a: {}", nombreMesa, nuevoEstado);
+                if (mesa.getEstado() != nuevoEstado) {
+                    mesa.setEstado(nuevoEstado);
+                    mesaRepository.save(mesa);
+                    mesaService.invalidarListado();
+                    logger.info("Estado de mesa {} cambiado a: {}", nombreMesa, nuevoEstado);
+                }
             } else {
+                // La mesa se borró o se renombró desde otro nodo
+                catalogoCache.olvidarMesa(nombreMesa);
                 logger.warn("Mesa no encontrada: {}", nombreMesa);
             }
         } catch (Exception e) {
@@ -0,0 +1,121 @@
+package com.puntomarisco.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Estado de un reporte histórico en ejecución: progreso por bloques,
+ * cancelación y el acumulador donde se combinan los bloques terminados.
+ */
+public class ReporteHistorico {
+
+    public enum EstadoReporte {
+        EN_CURSO,
+        COMPLETADO,
+        CANCELADO,
+        ERROR
+    }
+
+    private final String id;
+    private final LocalDateTime desde;
+    private final LocalDateTime hasta;
+    private final int totalBloques;
+    private final LocalDateTime inicio = LocalDateTime.now();
+    private final AtomicInteger bloquesCompletados = new AtomicInteger();
+    private final AcumuladorVentas acumulador = new AcumuladorVentas();
+
+    private volatile EstadoReporte estado = EstadoReporte.EN_CURSO;
+    private volatile LocalDateTime fin;
+    private volatile String error;
+    private volatile CompletableFuture<Void> tarea;
+
+    public ReporteHistorico(String id, LocalDateTime desde, LocalDateTime hasta, int totalBloques) {
+        this.id = id;
+        this.desde = desde;
+        this.hasta = hasta;
+        this.totalBloques = totalBloques;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public EstadoReporte getEstado() {
+        return estado;
+    }
+
+    public LocalDateTime getFin() {
+        return fin;
+    }
+
+    public boolean isCancelado() {
+        return estado == EstadoReporte.CANCELADO;
+    }
+
+    public boolean isTerminado() {
+        return estado != EstadoReporte.EN_CURSO;
+    }
+
+    void setTarea(CompletableFuture<Void> tarea) {
+        this.tarea = tarea;
+    }
+
+    void bloqueCompletado(AcumuladorVentas parcial) {
+        synchronized (acumulador) {
+            acumulador.combinar(parcial);
+        }
+        bloquesCompletados.incrementAndGet();
+    }
+
+    synchronized void completar() {
+        if (estado == EstadoReporte.EN_CURSO) {
+            estado = EstadoReporte.COMPLETADO;
+            fin = LocalDateTime.now();
+        }
+    }
+
+    synchronized void fallar(String mensaje) {
+        if (estado == EstadoReporte.EN_CURSO) {
+            estado = EstadoReporte.ERROR;
+            error = mensaje;
+            fin = LocalDateTime.now();
+        }
+    }
+
+    synchronized boolean cancelar() {
+        if (estado != EstadoReporte.EN_CURSO) {
+            return false;
+        }
+        estado = EstadoReporte.CANCELADO;
+        fin = LocalDateTime.now();
+        if (tarea != null) {
+            tarea.cancel(false);
+        }
+        return true;
+    }
+
+    public Map<String, Object> aMapa() {
+        Map<String, Object> mapa = new LinkedHashMap<>();
+        int completados = bloquesCompletados.get();
+        mapa.put("id", id);
+        mapa.put("estado", estado);
+        mapa.put("desde", desde);
+        mapa.put("hasta", hasta);
+        mapa.put("bloquesCompletados", completados);
+        mapa.put("totalBloques", totalBloques);
+        mapa.put("progreso", totalBloques > 0 ? Math.round(completados * 1000.0 / totalBloques) / 10.0 : 100.0);
+        mapa.put("inicio", inicio);
+        mapa.put("fin", fin);
+        if (error != null) {
+            mapa.put("error", error);
+        }
+        // Los resultados parciales también se exponen mientras el reporte avanza
+        synchronized (acumulador) {
+            mapa.put("resultado", acumulador.aMapa());
+        }
+        return mapa;
+    }
+}
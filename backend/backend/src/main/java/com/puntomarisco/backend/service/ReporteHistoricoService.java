@@ -0,0 +1,224 @@
+package com.puntomarisco.backend.service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.puntomarisco.backend.model.Pedido;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Motor de reportes históricos por rango de fechas.
+ * Divide el rango en bloques que se recorren en paralelo con un cursor JDBC de solo lectura
+ * (sin contexto de persistencia), acumulando cada bloque en contadores primitivos que luego se combinan.
+ * La memoria usada depende del número de bloques en vuelo, no del tamaño del rango.
+ */
+@Service
+public class ReporteHistoricoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReporteHistoricoService.class);
+
+    // Fetch size especial de MySQL Connector/J para leer el resultado fila a fila
+    private static final int FETCH_STREAMING = Integer.MIN_VALUE;
+
+    // Las tablas se sustituyen por las operativas o las de archivo
+    private static final String SQL_PEDIDOS =
+            "SELECT estado, hora, total_centimos, facturado, metodo_pago FROM %1$s WHERE hora >= ? AND hora < ?";
+
+    private static final String SQL_DETALLES =
+            "SELECT d.plato, d.cantidad, d.precio_centimos FROM %2$s d JOIN %1$s p ON p.id = d.pedido_id " +
+            "WHERE p.hora >= ? AND p.hora < ? AND p.facturado = true AND (d.estado IS NULL OR d.estado <> 'CANCELADO')";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ArchivoPedidosService archivoPedidosService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${reportes.paralelismo:0}")
+    private int paralelismo;
+
+    @Value("${reportes.horas-por-bloque:24}")
+    private int horasPorBloque;
+
+    @Value("${reportes.retencion-minutos:60}")
+    private int retencionMinutos;
+
+    private final Map<String, ReporteHistorico> reportes = new ConcurrentHashMap<>();
+
+    private ForkJoinPool pool;
+
+    // Cada bloque se lee en una transacción de solo lectura (réplica si está configurada)
+    private TransactionTemplate lectura;
+
+    @PostConstruct
+    public void iniciar() {
+        // Por defecto se limita a 4 hilos para no acaparar el pool de conexiones
+        int hilos = paralelismo > 0 ? paralelismo : Math.min(Runtime.getRuntime().availableProcessors(), 4);
+        pool = new ForkJoinPool(hilos);
+        lectura = new TransactionTemplate(transactionManager);
+        lectura.setReadOnly(true);
+        logger.info("Motor de reportes históricos iniciado con paralelismo {}", hilos);
+    }
+
+    @PreDestroy
+    public void detener() {
+        reportes.values().forEach(ReporteHistorico::cancelar);
+        pool.shutdownNow();
+    }
+
+    /**
+     * Inicia un reporte asíncrono para el rango [desde, hasta)
+     * @return Reporte en curso, consultable por su ID
+     */
+    public ReporteHistorico iniciarReporte(LocalDateTime desde, LocalDateTime hasta) {
+        if (desde == null || hasta == null || !desde.isBefore(hasta)) {
+            throw new IllegalArgumentException("El rango de fechas no es válido");
+        }
+        limpiarReportesAntiguos();
+
+        List<LocalDateTime[]> bloques = dividirRango(desde, hasta);
+        ReporteHistorico reporte = new ReporteHistorico(UUID.randomUUID().toString(), desde, hasta, bloques.size());
+        reportes.put(reporte.getId(), reporte);
+        logger.info("Iniciando reporte {} de {} a {} en {} bloques", reporte.getId(), desde, hasta, bloques.size());
+
+        CompletableFuture<?>[] tareas = bloques.stream()
+                .map(bloque -> CompletableFuture.runAsync(() -> procesarBloque(reporte, bloque[0], bloque[1]), pool))
+                .toArray(CompletableFuture[]::new);
+
+        CompletableFuture<Void> todas = CompletableFuture.allOf(tareas).whenComplete((r, ex) -> {
+            if (ex == null) {
+                reporte.completar();
+                logger.info("Reporte {} completado", reporte.getId());
+            } else if (!reporte.isCancelado()) {
+                Throwable causa = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                logger.error("Error en reporte {}: {}", reporte.getId(), causa.getMessage(), causa);
+                reporte.fallar(causa.getMessage());
+            }
+        });
+        reporte.setTarea(todas);
+        return reporte;
+    }
+
+    public ReporteHistorico obtenerReporte(String id) {
+        return reportes.get(id);
+    }
+
+    public boolean cancelarReporte(String id) {
+        ReporteHistorico reporte = reportes.get(id);
+        if (reporte == null) {
+            return false;
+        }
+        boolean cancelado = reporte.cancelar();
+        if (cancelado) {
+            logger.info("Reporte {} cancelado", id);
+        }
+        return cancelado;
+    }
+
+    private List<LocalDateTime[]> dividirRango(LocalDateTime desde, LocalDateTime hasta) {
+        Duration tamanoBloque = Duration.ofHours(Math.max(1, horasPorBloque));
+        List<LocalDateTime[]> bloques = new ArrayList<>();
+        LocalDateTime inicio = desde;
+        while (inicio.isBefore(hasta)) {
+            LocalDateTime fin = inicio.plus(tamanoBloque);
+            if (fin.isAfter(hasta)) {
+                fin = hasta;
+            }
+            bloques.add(new LocalDateTime[] { inicio, fin });
+            inicio = fin;
+        }
+        return bloques;
+    }
+
+    private void procesarBloque(ReporteHistorico reporte, LocalDateTime inicio, LocalDateTime fin) {
+        if (reporte.isCancelado()) {
+            return;
+        }
+        AcumuladorVentas parcial = new AcumuladorVentas();
+
+        // Un bloque puede abarcar pedidos aún operativos y pedidos ya archivados
+        lectura.executeWithoutResult(estado -> {
+            for (ArchivoPedidosService.Tablas tablas : archivoPedidosService.tablasConsulta()) {
+                recorrer(reporte, String.format(SQL_PEDIDOS, tablas.pedido, tablas.detalle), inicio, fin, rs -> {
+                    Timestamp hora = rs.getTimestamp("hora");
+                    parcial.registrarPedido(
+                            aEnum(Pedido.EstadoPedido.class, rs.getString("estado")),
+                            hora != null ? hora.toLocalDateTime().getHour() : 0,
+                            rs.getLong("total_centimos"),
+                            rs.getBoolean("facturado"),
+                            aEnum(Pedido.MetodoPago.class, rs.getString("metodo_pago")));
+                });
+
+                recorrer(reporte, String.format(SQL_DETALLES, tablas.pedido, tablas.detalle), inicio, fin, rs ->
+                        parcial.registrarDetalle(rs.getString("plato"), rs.getInt("cantidad"), rs.getLong("precio_centimos")));
+            }
+        });
+
+        if (!reporte.isCancelado()) {
+            reporte.bloqueCompletado(parcial);
+        }
+    }
+
+    private void recorrer(ReporteHistorico reporte, String sql, LocalDateTime inicio, LocalDateTime fin,
+                          RowCallbackHandler manejador) {
+        try {
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(FETCH_STREAMING);
+                ps.setTimestamp(1, Timestamp.valueOf(inicio));
+                ps.setTimestamp(2, Timestamp.valueOf(fin));
+                return ps;
+            }, (RowCallbackHandler) rs -> {
+                if (reporte.isCancelado()) {
+                    throw new CancellationException("Reporte cancelado");
+                }
+                manejador.processRow(rs);
+            });
+        } catch (CancellationException e) {
+            logger.debug("Bloque {} - {} del reporte {} interrumpido por cancelación", inicio, fin, reporte.getId());
+        }
+    }
+
+    private void limpiarReportesAntiguos() {
+        LocalDateTime limite = LocalDateTime.now().minusMinutes(retencionMinutos);
+        reportes.values().removeIf(r -> r.isTerminado() && r.getFin() != null && r.getFin().isBefore(limite));
+    }
+
+    private static <E extends Enum<E>> E aEnum(Class<E> tipo, String valor) {
+        if (valor == null) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(tipo, valor);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
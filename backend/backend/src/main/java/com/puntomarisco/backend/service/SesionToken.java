@@ -0,0 +1,39 @@
+package com.puntomarisco.backend.service;
+
+import com.puntomarisco.backend.model.Usuario;
+
+/**
+ * Datos verificados de un token de acceso
+ */
+public class SesionToken {
+
+    private final Long usuarioId;
+    private final Usuario.RolUsuario rol;
+    private final long emitidoEn;
+    private final long expiraEn;
+
+    public SesionToken(Long usuarioId, Usuario.RolUsuario rol, long emitidoEn, long expiraEn) {
+        this.usuarioId = usuarioId;
+        this.rol = rol;
+        this.emitidoEn = emitidoEn;
+        this.expiraEn = expiraEn;
+    }
+
+    public Long getUsuarioId() {
+        return usuarioId;
+    }
+
+    public Usuario.RolUsuario getRol() {
+        return rol;
+    }
+
+    // Milisegundos epoch
+    public long getEmitidoEn() {
+        return emitidoEn;
+    }
+
+    // Segundos epoch
+    public long getExpiraEn() {
+        return expiraEn;
+    }
+}
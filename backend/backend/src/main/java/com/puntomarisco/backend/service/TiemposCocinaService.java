@@ -0,0 +1,285 @@
+package com.puntomarisco.backend.service;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.puntomarisco.backend.model.DetallePedido;
+import com.puntomarisco.backend.model.Pedido;
+import com.puntomarisco.backend.model.TransicionPedido;
+import com.puntomarisco.backend.repository.TransicionPedidoRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Seguimiento de tiempos de cocina: guarda cada cambio de estado de un pedido en la tabla
+ * pedido_transicion (en segundo plano, por lotes) y mantiene histogramas en memoria del tiempo
+ * de preparación (creación → LISTO) y de entrega (LISTO → ENTREGADO), globales, por plato y por hora.
+ */
+@Service
+public class TiemposCocinaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TiemposCocinaService.class);
+
+    private static final String SQL_INSERTAR =
+            "INSERT INTO pedido_transicion (pedido_id, estado_anterior, estado_nuevo, fecha, duracion_ms) VALUES (?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransicionPedidoRepository transicionPedidoRepository;
+
+    @Value("${cocina.transiciones.capacidad-cola:10000}")
+    private int capacidadCola;
+
+    @Value("${cocina.transiciones.lote:500}")
+    private int tamanoLote;
+
+    private BlockingQueue<TransicionPedido> cola;
+    private ScheduledExecutorService escritor;
+
+    // Último estado conocido de cada pedido activo
+    private final Map<Long, Marca> marcas = new ConcurrentHashMap<>();
+
+    private final Tiempos global = new Tiempos();
+    private final Map<String, Tiempos> porPlato = new ConcurrentHashMap<>();
+    private final Tiempos[] porHora = new Tiempos[24];
+    private final Map<Pedido.EstadoPedido, LatenciaHistograma> porEstado = new EnumMap<>(Pedido.EstadoPedido.class);
+
+    @PostConstruct
+    public void iniciar() {
+        for (int h = 0; h < 24; h++) {
+            porHora[h] = new Tiempos();
+        }
+        for (Pedido.EstadoPedido estado : Pedido.EstadoPedido.values()) {
+            porEstado.put(estado, new LatenciaHistograma());
+        }
+        cola = new LinkedBlockingQueue<>(capacidadCola);
+        escritor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "transiciones-pedido");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        escritor.scheduleWithFixedDelay(this::vaciarCola, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void detener() {
+        escritor.shutdown();
+        vaciarCola();
+    }
+
+    /**
+     * Registra un cambio de estado de un pedido. Los datos se copian ahora y se procesan
+     * tras el commit de la transacción en curso, sin escribir en la base de datos en el hilo de la petición.
+     * Con anterior null se toma el último estado conocido del pedido en memoria.
+     */
+    public void registrarTransicion(Pedido pedido, Pedido.EstadoPedido anterior, Pedido.EstadoPedido nuevo) {
+        if (pedido == null || pedido.getId() == null || nuevo == null || anterior == nuevo) {
+            return;
+        }
+        Long pedidoId = pedido.getId();
+        LocalDateTime horaPedido = pedido.getHora();
+        List<String> platos = new ArrayList<>();
+        if (pedido.getDetalles() != null) {
+            for (DetallePedido detalle : pedido.getDetalles()) {
+                if (detalle.getPlato() != null && detalle.getEstado() != DetallePedido.EstadoDetalle.CANCELADO) {
+                    platos.add(detalle.getPlato());
+                }
+            }
+        }
+        ejecutarTrasCommit(() -> procesarTransicion(pedidoId, anterior, nuevo, platos, horaPedido));
+    }
+
+    /**
+     * Olvida un pedido eliminado para no dejar su marca en memoria
+     */
+    public void olvidarPedido(Long pedidoId) {
+        if (pedidoId != null) {
+            marcas.remove(pedidoId);
+        }
+    }
+
+    private void procesarTransicion(Long pedidoId, Pedido.EstadoPedido anterior, Pedido.EstadoPedido nuevo,
+                                    List<String> platos, LocalDateTime horaPedido) {
+        long ahora = System.currentTimeMillis();
+        Marca marca = marcas.get(pedidoId);
+        if (anterior == null && marca != null) {
+            anterior = marca.estado;
+        }
+
+        long creado = marca != null ? marca.creadoMs : (horaPedido != null ? aMilis(horaPedido) : -1);
+        Long duracion = null;
+        if (marca != null) {
+            duracion = ahora - marca.desdeMs;
+        } else if (creado > 0 && (anterior == null || anterior == Pedido.EstadoPedido.PENDIENTE
+                || anterior == Pedido.EstadoPedido.EN_PROCESO)) {
+            // Sin marca en memoria (p. ej. tras reiniciar): el pedido lleva en cocina desde su creación
+            duracion = ahora - creado;
+        }
+        if (anterior != null && duracion != null) {
+            porEstado.get(anterior).registrar(duracion);
+        }
+
+        List<String> platosPedido = !platos.isEmpty() || marca == null ? platos : marca.platos;
+        int hora = marca != null ? marca.hora
+                : (horaPedido != null ? horaPedido.getHour() : LocalDateTime.now().getHour());
+
+        if (nuevo == Pedido.EstadoPedido.LISTO && creado > 0) {
+            long preparacion = ahora - creado;
+            global.preparacion.registrar(preparacion);
+            porHora[hora].preparacion.registrar(preparacion);
+            for (String plato : platosPedido) {
+                porPlato.computeIfAbsent(plato, p -> new Tiempos()).preparacion.registrar(preparacion);
+            }
+        } else if (nuevo == Pedido.EstadoPedido.ENTREGADO && marca != null && marca.estado == Pedido.EstadoPedido.LISTO) {
+            long entrega = ahora - marca.desdeMs;
+            global.entrega.registrar(entrega);
+            porHora[hora].entrega.registrar(entrega);
+            for (String plato : platosPedido) {
+                porPlato.computeIfAbsent(plato, p -> new Tiempos()).entrega.registrar(entrega);
+            }
+        }
+
+        if (nuevo == Pedido.EstadoPedido.FACTURADO || nuevo == Pedido.EstadoPedido.CANCELADO) {
+            marcas.remove(pedidoId);
+        } else {
+            marcas.put(pedidoId, new Marca(nuevo, ahora, creado > 0 ? creado : ahora, platosPedido, hora));
+        }
+
+        TransicionPedido transicion = new TransicionPedido(pedidoId, anterior, nuevo, LocalDateTime.now(), duracion);
+        if (!cola.offer(transicion)) {
+            logger.warn("Cola de transiciones llena, se descarta la transición del pedido {} a {}", pedidoId, nuevo);
+        }
+    }
+
+    private void vaciarCola() {
+        try {
+            List<TransicionPedido> lote = new ArrayList<>(tamanoLote);
+            while (cola.drainTo(lote, tamanoLote) > 0) {
+                jdbcTemplate.batchUpdate(SQL_INSERTAR, lote, lote.size(), (ps, t) -> {
+                    ps.setLong(1, t.getPedidoId());
+                    ps.setString(2, t.getEstadoAnterior() != null ? t.getEstadoAnterior().name() : null);
+                    ps.setString(3, t.getEstadoNuevo().name());
+                    ps.setTimestamp(4, Timestamp.valueOf(t.getFecha()));
+                    if (t.getDuracionMs() != null) {
+                        ps.setLong(5, t.getDuracionMs());
+                    } else {
+                        ps.setNull(5, Types.BIGINT);
+                    }
+                });
+                logger.debug("Guardadas {} transiciones de pedidos", lote.size());
+                lote.clear();
+            }
+            // Pedidos que nunca se cerraron no deben quedarse en memoria indefinidamente
+            long limite = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(24);
+            marcas.values().removeIf(m -> m.desdeMs < limite);
+        } catch (Exception e) {
+            logger.error("Error al guardar transiciones de pedidos: {}", e.getMessage(), e);
+        }
+    }
+
+    public List<TransicionPedido> obtenerTransiciones(Long pedidoId) {
+        return transicionPedidoRepository.findByPedidoIdOrderByFechaAsc(pedidoId);
+    }
+
+    /**
+     * Percentiles de tiempos de cocina en milisegundos
+     */
+    public Map<String, Object> obtenerResumen() {
+        Map<String, Object> resumen = new LinkedHashMap<>();
+        resumen.put("preparacion", global.preparacion.resumen());
+        resumen.put("entrega", global.entrega.resumen());
+
+        Map<String, Object> estados = new LinkedHashMap<>();
+        porEstado.forEach((estado, histograma) -> {
+            if (histograma.getTotal() > 0) {
+                estados.put(estado.name(), histograma.resumen());
+            }
+        });
+        resumen.put("tiempoEnEstado", estados);
+
+        Map<String, Object> platos = new TreeMap<>();
+        porPlato.forEach((plato, tiempos) -> platos.put(plato, tiempos.resumen()));
+        resumen.put("porPlato", platos);
+
+        Map<String, Object> horas = new LinkedHashMap<>();
+        for (int h = 0; h < 24; h++) {
+            if (porHora[h].preparacion.getTotal() > 0 || porHora[h].entrega.getTotal() > 0) {
+                horas.put(String.valueOf(h), porHora[h].resumen());
+            }
+        }
+        resumen.put("porHora", horas);
+        resumen.put("pedidosEnSeguimiento", marcas.size());
+        return resumen;
+    }
+
+    private static void ejecutarTrasCommit(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+
+    private static long aMilis(LocalDateTime fecha) {
+        return fecha.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static final class Tiempos {
+        final LatenciaHistograma preparacion = new LatenciaHistograma();
+        final LatenciaHistograma entrega = new LatenciaHistograma();
+
+        Map<String, Object> resumen() {
+            Map<String, Object> resumen = new LinkedHashMap<>();
+            resumen.put("preparacion", preparacion.resumen());
+            resumen.put("entrega", entrega.resumen());
+            return resumen;
+        }
+    }
+
+    private static final class Marca {
+        final Pedido.EstadoPedido estado;
+        final long desdeMs;
+        final long creadoMs;
+        final List<String> platos;
+        final int hora;
+
+        Marca(Pedido.EstadoPedido estado, long desdeMs, long creadoMs, List<String> platos, int hora) {
+            this.estado = estado;
+            this.desdeMs = desdeMs;
+            this.creadoMs = creadoMs;
+            this.platos = platos;
+            this.hora = hora;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.puntomarisco.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.puntomarisco.backend.model.Usuario;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Tokens de acceso firmados con HMAC-SHA256 y de vida corta, emitidos en el login.
+ * Verificarlos no consulta la base de datos ni ejecuta BCrypt: solo recalcula la firma y la compara
+ * en tiempo constante. Los usuarios desactivados se revocan en memoria hasta que sus tokens expiran.
+ * Formato: base64url("id:rol:emitido:expira") + "." + base64url(firma)
+ */
+@Service
+public class TokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenService.class);
+
+    private static final String ALGORITMO = "HmacSHA256";
+    private static final Base64.Encoder CODIFICADOR = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODIFICADOR = Base64.getUrlDecoder();
+
+    @Value("${seguridad.token.secreto:}")
+    private String secreto;
+
+    @Value("${seguridad.token.duracion-minutos:480}")
+    private long duracionMinutos;
+
+    private SecretKeySpec clave;
+
+    // Mac no es thread-safe; se reutiliza una instancia por hilo
+    private ThreadLocal<Mac> macs;
+
+    // usuarioId -> milisegundo en que se revocaron sus tokens; con segundos enteros un login
+    // en el mismo segundo que la revocación daría un token ya revocado
+    private final Map<Long, Long> revocados = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void iniciar() {
+        byte[] bytesClave;
+        if (secreto == null || secreto.isBlank()) {
+            bytesClave = new byte[32];
+            new SecureRandom().nextBytes(bytesClave);
+            logger.warn("seguridad.token.secreto no configurado: se usa una clave aleatoria, los tokens no sobreviven a un reinicio");
+        } else {
+            bytesClave = secreto.getBytes(StandardCharsets.UTF_8);
+        }
+        clave = new SecretKeySpec(bytesClave, ALGORITMO);
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITMO);
+                mac.init(clave);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("No se pudo inicializar " + ALGORITMO, e);
+            }
+        });
+    }
+
+    /**
+     * Emitir un token de acceso para un usuario autenticado
+     */
+    public String emitirToken(Usuario usuario) {
+        long emitido = System.currentTimeMillis();
+        long expira = emitido / 1000 + duracionMinutos * 60;
+        String datos = usuario.getId() + ":" + usuario.getRol().name() + ":" + emitido + ":" + expira;
+        String carga = CODIFICADOR.encodeToString(datos.getBytes(StandardCharsets.UTF_8));
+        return carga + "." + CODIFICADOR.encodeToString(firmar(carga));
+    }
+
+    public long getDuracionSegundos() {
+        return duracionMinutos * 60;
+    }
+
+    /**
+     * Verificar firma, expiración y revocación de un token
+     * @return Sesión si el token es válido, vacío en caso contrario
+     */
+    public Optional<SesionToken> verificarToken(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        int punto = token.indexOf('.');
+        if (punto <= 0 || punto == token.length() - 1) {
+            return Optional.empty();
+        }
+        try {
+            String carga = token.substring(0, punto);
+            byte[] firma = DECODIFICADOR.decode(token.substring(punto + 1));
+            if (!MessageDigest.isEqual(firmar(carga), firma)) {
+                return Optional.empty();
+            }
+
+            String[] partes = new String(DECODIFICADOR.decode(carga), StandardCharsets.UTF_8).split(":");
+            if (partes.length != 4) {
+                return Optional.empty();
+            }
+            Long usuarioId = Long.valueOf(partes[0]);
+            Usuario.RolUsuario rol = Usuario.RolUsuario.valueOf(partes[1]);
+            long emitido = Long.parseLong(partes[2]);
+            long expira = Long.parseLong(partes[3]);
+
+            if (expira <= System.currentTimeMillis() / 1000) {
+                return Optional.empty();
+            }
+            Long revocadoEn = revocados.get(usuarioId);
+            if (revocadoEn != null && emitido <= revocadoEn) {
+                return Optional.empty();
+            }
+            return Optional.of(new SesionToken(usuarioId, rol, emitido, expira));
+        } catch (IllegalArgumentException e) {
+            // Base64 o campos mal formados
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Invalidar todos los tokens emitidos hasta ahora para un usuario
+     */
+    public void revocarTokens(Long usuarioId) {
+        revocados.put(usuarioId, System.currentTimeMillis());
+        logger.info("Tokens revocados para usuario ID: {}", usuarioId);
+    }
+
+    // Una revocación más antigua que la duración de un token ya no puede rechazar nada
+    @Scheduled(fixedDelay = 600_000)
+    public void limpiarRevocaciones() {
+        long limite = System.currentTimeMillis() - getDuracionSegundos() * 1000;
+        revocados.values().removeIf(revocadoEn -> revocadoEn < limite);
+    }
+
+    private byte[] firmar(String carga) {
+        return macs.get().doFinal(carga.getBytes(StandardCharsets.US_ASCII));
+    }
+}
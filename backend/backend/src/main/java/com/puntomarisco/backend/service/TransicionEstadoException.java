@@ -0,0 +1,33 @@
+package com.puntomarisco.backend.service;
+
+import com.puntomarisco.backend.model.Pedido;
+
+/**
+ * Se lanza cuando un cambio de estado de pedido no está permitido por la tabla de transiciones
+ * o cuando otro proceso cambió el estado antes de aplicar el UPDATE condicional.
+ */
+public class TransicionEstadoException extends RuntimeException {
+
+    private final Long pedidoId;
+    private final Pedido.EstadoPedido estadoActual;
+    private final Pedido.EstadoPedido estadoSolicitado;
+
+    public TransicionEstadoException(Long pedidoId, Pedido.EstadoPedido estadoActual, Pedido.EstadoPedido estadoSolicitado) {
+        super("El pedido " + pedidoId + " no puede pasar de " + estadoActual + " a " + estadoSolicitado);
+        this.pedidoId = pedidoId;
+        this.estadoActual = estadoActual;
+        this.estadoSolicitado = estadoSolicitado;
+    }
+
+    public Long getPedidoId() {
+        return pedidoId;
+    }
+
+    public Pedido.EstadoPedido getEstadoActual() {
+        return estadoActual;
+    }
+
+    public Pedido.EstadoPedido getEstadoSolicitado() {
+        return estadoSolicitado;
+    }
+}
@@ -0,0 +1,76 @@
+package com.puntomarisco.backend.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.puntomarisco.backend.model.Usuario;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Registro diferido del último acceso de los usuarios. El login solo anota la fecha en memoria;
+ * cada pocos segundos se escriben todas las pendientes con un único UPDATE por lotes.
+ * Varios logins del mismo usuario entre dos escrituras se agrupan en una sola fila.
+ */
+@Service
+public class UltimoAccesoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UltimoAccesoService.class);
+
+    private static final String SQL_ACTUALIZAR = "UPDATE usuarios SET ultimo_acceso = ? WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    // usuarioId -> último acceso aún no escrito
+    private final Map<Long, LocalDateTime> pendientes = new ConcurrentHashMap<>();
+
+    public void registrar(Long usuarioId, LocalDateTime fecha) {
+        pendientes.merge(usuarioId, fecha, (actual, nueva) -> nueva.isAfter(actual) ? nueva : actual);
+    }
+
+    @Scheduled(fixedDelayString = "${usuarios.ultimo-acceso.intervalo-ms:5000}")
+    public void escribirPendientes() {
+        if (pendientes.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Long, LocalDateTime>> lote = new ArrayList<>(pendientes.size());
+        pendientes.forEach((id, fecha) -> lote.add(Map.entry(id, fecha)));
+        try {
+            jdbcTemplate.batchUpdate(SQL_ACTUALIZAR, lote, lote.size(), (ps, entrada) -> {
+                ps.setTimestamp(1, Timestamp.valueOf(entrada.getValue()));
+                ps.setLong(2, entrada.getKey());
+            });
+            // Solo se quitan las entradas escritas; un login posterior conserva su fecha más reciente
+            lote.forEach(entrada -> pendientes.remove(entrada.getKey(), entrada.getValue()));
+            // El UPDATE por JDBC no pasa por Hibernate: las copias en caché de esos usuarios quedan viejas
+            Cache cache = entityManagerFactory.getCache();
+            lote.forEach(entrada -> cache.evict(Usuario.class, entrada.getKey()));
+            logger.debug("Último acceso actualizado para {} usuarios", lote.size());
+        } catch (Exception e) {
+            // Se reintenta en la siguiente pasada
+            logger.warn("Error al escribir último acceso de {} usuarios: {}", lote.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        escribirPendientes();
+    }
+}
@@ -5,8 +5,8 @@ import com.puntomarisco.backend.repository.UsuarioRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
@@ -22,15 +22,26 @@ public class UsuarioService {
     @Autowired
     private UsuarioRepository usuarioRepository;
     
-    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder(12);
+    @Autowired
+    private TokenService tokenService;
+    
+    @Autowired
+    private HashContrasenasService hashContrasenasService;
+    
+    @Autowired
+    private UltimoAccesoService ultimoAccesoService;
     
     /**
-     * Autenticar usuario con email y contraseña
+     * Autenticar usuario con email y contraseña.
+     * Se ejecuta sin transacción para no retener una conexión mientras BCrypt corre en su pool.
      * @param email Email del usuario
      * @param password Contraseña en texto plano
+     * @param ip Dirección del cliente, para el límite de intentos
      * @return Usuario si las credenciales son válidas, null en caso contrario
+     * @throws AutenticacionSaturadaException Si se supera el límite de intentos o el pool de BCrypt está lleno
      */
-    public Usuario autenticarUsuario(String email, String password) {
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Usuario autenticarUsuario(String email, String password, String ip) {
         try {
             // Validar parámetros de entrada
             if (email == null || email.trim().isEmpty() || password == null || password.trim().isEmpty()) {
@@ -38,6 +49,8 @@ public class UsuarioService {
                 return null;
             }
             
+            hashContrasenasService.verificarLimites(email.trim().toLowerCase(), ip);
+            
             // Buscar usuario por email
             Optional<Usuario> usuarioOpt = usuarioRepository.findByEmailAndActivoTrue(email.trim().toLowerCase());
             
@@ -45,9 +58,9 @@ public class UsuarioService {
                 Usuario usuario = usuarioOpt.get();
                 
                 // Verificar contraseña
-                if (passwordEncoder.matches(password, usuario.getPassword())) {
+                if (hashContrasenasService.verificar(password, usuario.getPassword())) {
                     // Actualizar último acceso
-                    actualizarUltimoAcceso(usuario.getId());
+                    actualizarUltimoAcceso(usuario);
                     logger.info("Login exitoso para usuario: {}", email);
                     return usuario;
                 } else {
@@ -58,6 +71,9 @@ public class UsuarioService {
             }
             
             return null;
+        } catch (AutenticacionSaturadaException e) {
+            logger.warn("Login rechazado para {}: {}", email, e.getMessage());
+            throw e;
         } catch (Exception e) {
             logger.error("Error durante autenticación para usuario: {}", email, e);
             return null;
@@ -83,7 +99,7 @@ public class UsuarioService {
             // Preparar usuario para guardar
             usuario.setEmail(usuario.getEmail().trim().toLowerCase());
             usuario.setNombre(usuario.getNombre().trim());
-            usuario.setPassword(passwordEncoder.encode(usuario.getPassword()));
+            usuario.setPassword(hashContrasenasService.codificar(usuario.getPassword()));
             usuario.setActivo(true);
             usuario.setFechaCreacion(LocalDateTime.now());
             
@@ -124,6 +140,10 @@ public class UsuarioService {
             
             // Actualizar rol si se proporciona
             if (datosActualizacion.getRol() != null) {
+                if (datosActualizacion.getRol() != usuario.getRol()) {
+                    // Los tokens emitidos llevan el rol anterior
+                    tokenService.revocarTokens(id);
+                }
                 usuario.setRol(datosActualizacion.getRol());
             }
             
@@ -132,7 +152,7 @@ public class UsuarioService {
                 if (datosActualizacion.getPassword().length() < 6) {
                     throw new IllegalArgumentException("La contraseña debe tener al menos 6 caracteres");
                 }
-                usuario.setPassword(passwordEncoder.encode(datosActualizacion.getPassword()));
+                usuario.setPassword(hashContrasenasService.codificar(datosActualizacion.getPassword()));
             }
             
             usuario.setFechaActualizacion(LocalDateTime.now());
@@ -194,6 +214,9 @@ public class UsuarioService {
             usuario.setFechaActualizacion(LocalDateTime.now());
             
             usuarioRepository.save(usuario);
+            if (!Boolean.TRUE.equals(activo)) {
+                tokenService.revocarTokens(id);
+            }
             logger.info("Estado de usuario cambiado - ID: {}, Activo: {}", id, activo);
         } catch (Exception e) {
             logger.error("Error al cambiar estado de usuario - ID: {}", id, e);
@@ -217,20 +240,13 @@ public class UsuarioService {
     
     /**
      * Actualizar último acceso del usuario
-     * @param id ID del usuario
+     * @param usuario Usuario que acaba de autenticarse
      */
-    private void actualizarUltimoAcceso(Long id) {
-        try {
-            Optional<Usuario> usuarioOpt = usuarioRepository.findById(id);
-            if (usuarioOpt.isPresent()) {
-                Usuario usuario = usuarioOpt.get();
-                usuario.setUltimoAcceso(LocalDateTime.now());
-                usuarioRepository.save(usuario);
-            }
-        } catch (Exception e) {
-            logger.warn("Error al actualizar último acceso para usuario ID: {}", id, e);
-            // No lanzar excepción para no interrumpir el login
-        }
+    private void actualizarUltimoAcceso(Usuario usuario) {
+        // Se escribe en segundo plano por lotes; el login no espera a la base de datos
+        LocalDateTime ahora = LocalDateTime.now();
+        usuario.setUltimoAcceso(ahora);
+        ultimoAccesoService.registrar(usuario.getId(), ahora);
     }
     
     /**
@@ -0,0 +1,85 @@
+package com.puntomarisco.backend.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotationIntrospectorPair;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.puntomarisco.backend.model.DetallePedido;
+import com.puntomarisco.backend.model.Pedido;
+
+/**
+ * ?fields= sobre pedidos con líneas: solo salen los campos pedidos en cada nivel y, sin
+ * selección, el JSON queda igual que siempre
+ */
+class CamposJsonTest {
+
+    @Test
+    void filtraPorNivel() throws Exception {
+        ObjectMapper mapper = mapper();
+        List<Pedido> pedidos = List.of(pedido());
+
+        JsonNode completo = mapper.readTree(mapper.writeValueAsString(pedidos)).get(0);
+        assertTrue(completo.has("qrUrl"));
+        assertTrue(completo.get("detalles").get(0).has("notas"));
+
+        JsonNode filtrado = mapper.readTree(mapper.writer(CamposJson.filtros("id,mesa,detalles(plato,cantidad)"))
+                .writeValueAsString(pedidos)).get(0);
+        assertEquals(List.of("id", "mesa", "detalles"), nombres(filtrado));
+        assertEquals(List.of("plato", "cantidad"), nombres(filtrado.get("detalles").get(0)));
+
+        // Sin paréntesis el campo va completo
+        JsonNode detallesCompletos = mapper.readTree(mapper.writer(CamposJson.filtros("detalles"))
+                .writeValueAsString(pedidos)).get(0);
+        assertEquals(List.of("detalles"), nombres(detallesCompletos));
+        assertTrue(detallesCompletos.get("detalles").get(0).has("notas"));
+    }
+
+    @Test
+    void parsea() {
+        assertTrue(CamposJson.incluye("id, detalles(plato)", "detalles"));
+        assertFalse(CamposJson.incluye("id,mesa", "detalles"));
+        assertEquals(null, CamposJson.parsear("detalles(plato),detalles").get("detalles"));
+        assertThrows(IllegalArgumentException.class, () -> CamposJson.parsear("id,detalles(plato"));
+        assertThrows(IllegalArgumentException.class, () -> CamposJson.parsear("id,,mesa"));
+        assertThrows(IllegalArgumentException.class, () -> CamposJson.parsear("id)"));
+    }
+
+    // Igual que el ObjectMapper de la aplicación tras CamposJsonConfig
+    private static ObjectMapper mapper() {
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        mapper.setAnnotationIntrospector(new AnnotationIntrospectorPair(
+                new CamposJson.Introspector(), mapper.getSerializationConfig().getAnnotationIntrospector()));
+        mapper.setFilterProvider(CamposJson.filtrosPorDefecto());
+        return mapper;
+    }
+
+    private static Pedido pedido() {
+        Pedido pedido = new Pedido();
+        pedido.setId(7L);
+        pedido.setMesa("Mesa 3");
+        pedido.setQrUrl("https://example.com/qr/7");
+        DetallePedido detalle = new DetallePedido();
+        detalle.setPlato("Ceviche");
+        detalle.setCantidad(2);
+        detalle.setNotas("sin cebolla");
+        detalle.setPedido(pedido);
+        pedido.setDetalles(new ArrayList<>(List.of(detalle)));
+        return pedido;
+    }
+
+    private static List<String> nombres(JsonNode nodo) {
+        List<String> nombres = new ArrayList<>();
+        nodo.fieldNames().forEachRemaining(nombres::add);
+        return nombres;
+    }
+}
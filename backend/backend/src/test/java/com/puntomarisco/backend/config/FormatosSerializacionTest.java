@@ -0,0 +1,136 @@
+package com.puntomarisco.backend.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.puntomarisco.backend.model.DetallePedido;
+import com.puntomarisco.backend.model.Pedido;
+
+/**
+ * Serialización de pedidos: 1000 pedidos de 5 líneas en JSON, JSON con Blackbird, CBOR y Smile.
+ * Comprueba que cada formato vuelve a dar los mismos pedidos y que los binarios ocupan menos;
+ * la prueba de rendimiento anota en el log los ns por pedido al leer cada formato.
+ */
+class FormatosSerializacionTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(FormatosSerializacionTest.class);
+
+    private static final int PEDIDOS = 1000;
+    private static final int LINEAS = 5;
+    private static final int CALENTAMIENTO = 20;
+    private static final int RONDAS = 50;
+
+    private static final TypeReference<List<Pedido>> LISTA = new TypeReference<>() {
+    };
+
+    @Test
+    void cadaFormatoDevuelveLosMismosPedidos() throws Exception {
+        List<Pedido> pedidos = pedidos();
+
+        Map<String, Integer> bytes = new LinkedHashMap<>();
+        for (Map.Entry<String, ObjectMapper> formato : formatos().entrySet()) {
+            ObjectMapper mapper = formato.getValue();
+            byte[] contenido = mapper.writeValueAsBytes(pedidos);
+            bytes.put(formato.getKey(), contenido.length);
+
+            List<Pedido> leidos = mapper.readValue(contenido, LISTA);
+            assertEquals(PEDIDOS, leidos.size(), formato.getKey());
+            assertEquals(pedidos.get(PEDIDOS - 1).getMesa(), leidos.get(PEDIDOS - 1).getMesa(), formato.getKey());
+            assertEquals(pedidos.get(PEDIDOS - 1).getTotal(), leidos.get(PEDIDOS - 1).getTotal(), formato.getKey());
+            assertEquals("Plato 4", leidos.get(PEDIDOS - 1).getDetalles().get(LINEAS - 1).getPlato(), formato.getKey());
+        }
+
+        assertEquals(bytes.get("JSON"), bytes.get("JSON + Blackbird"));
+        assertTrue(bytes.get("CBOR + Blackbird") < bytes.get("JSON"));
+        assertTrue(bytes.get("Smile + Blackbird") < bytes.get("JSON"));
+    }
+
+    // Se calientan todos los formatos antes de medir y se toma el mejor tiempo intercalando las
+    // rondas, para que el orden de medición no favorezca a ninguno
+    @Test
+    @Tag("benchmark")
+    void tiempoDeLecturaPorFormato() throws Exception {
+        List<Pedido> pedidos = pedidos();
+        Map<String, ObjectMapper> formatos = formatos();
+        Map<String, byte[]> contenidos = new LinkedHashMap<>();
+        for (Map.Entry<String, ObjectMapper> formato : formatos.entrySet()) {
+            contenidos.put(formato.getKey(), formato.getValue().writeValueAsBytes(pedidos));
+            for (int i = 0; i < CALENTAMIENTO; i++) {
+                formato.getValue().readValue(contenidos.get(formato.getKey()), LISTA);
+            }
+        }
+
+        Map<String, Long> lecturaNs = new LinkedHashMap<>();
+        for (int ronda = 0; ronda < RONDAS; ronda++) {
+            for (Map.Entry<String, ObjectMapper> formato : formatos.entrySet()) {
+                long inicio = System.nanoTime();
+                List<Pedido> leidos = formato.getValue().readValue(contenidos.get(formato.getKey()), LISTA);
+                long ns = (System.nanoTime() - inicio) / PEDIDOS;
+                assertEquals(PEDIDOS, leidos.size(), formato.getKey());
+                lecturaNs.merge(formato.getKey(), ns, Math::min);
+            }
+        }
+
+        logger.info("ns por pedido al leer {} pedidos: {}", PEDIDOS, lecturaNs);
+    }
+
+    private static Map<String, ObjectMapper> formatos() {
+        Map<String, ObjectMapper> formatos = new LinkedHashMap<>();
+        formatos.put("JSON", Jackson2ObjectMapperBuilder.json().build());
+        formatos.put("JSON + Blackbird", Jackson2ObjectMapperBuilder.json().modulesToInstall(new BlackbirdModule()).build());
+        formatos.put("CBOR + Blackbird", Jackson2ObjectMapperBuilder.json().factory(new CBORFactory())
+                .modulesToInstall(new BlackbirdModule()).build());
+        formatos.put("Smile + Blackbird", Jackson2ObjectMapperBuilder.json().factory(new SmileFactory())
+                .modulesToInstall(new BlackbirdModule()).build());
+        return formatos;
+    }
+
+    private static List<Pedido> pedidos() {
+        List<Pedido> pedidos = new ArrayList<>(PEDIDOS);
+        LocalDateTime hora = LocalDateTime.of(2025, 3, 14, 12, 0);
+        for (int i = 0; i < PEDIDOS; i++) {
+            Pedido pedido = new Pedido();
+            pedido.setId((long) i + 1);
+            pedido.setMesa("Mesa " + (i % 20 + 1));
+            pedido.setMesaId((long) (i % 20 + 1));
+            pedido.setEstado(Pedido.EstadoPedido.values()[i % 4]);
+            pedido.setHora(hora.plusMinutes(i));
+            pedido.setQrUrl("https://api.qrserver.com/v1/create-qr-code/?size=200x200&data=Pedido" + (i + 1));
+            List<DetallePedido> detalles = new ArrayList<>(LINEAS);
+            long total = 0;
+            for (int j = 0; j < LINEAS; j++) {
+                DetallePedido detalle = new DetallePedido();
+                detalle.setId((long) i * LINEAS + j + 1);
+                detalle.setPlato("Plato " + j);
+                detalle.setPlatoId((long) j + 1);
+                detalle.setCantidad(j % 3 + 1);
+                detalle.setPrecioCentimos(1500 + j * 250);
+                detalle.setNotas(j == 0 ? "sin cebolla" : null);
+                detalle.setPedido(pedido);
+                detalles.add(detalle);
+                total += detalle.getPrecioCentimos() * detalle.getCantidad();
+            }
+            pedido.setDetalles(detalles);
+            pedido.setTotalCentimos(total);
+            pedidos.add(pedido);
+        }
+        return pedidos;
+    }
+}
@@ -0,0 +1,84 @@
+package com.puntomarisco.backend.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Enrutamiento con dos bases H2 en memoria que hacen de primaria y réplica:
+ * cada una guarda su propio nombre para saber a cuál llegó la consulta. Las transacciones
+ * las abre JpaTransactionManager, como en la aplicación, con Hibernate sobre el DataSource enrutado.
+ */
+class ReplicaLecturaConfigTest {
+
+    private static final String CONSULTA = "SELECT nombre FROM origen";
+
+    private EmbeddedDatabase primaria;
+    private EmbeddedDatabase replica;
+    private LocalContainerEntityManagerFactoryBean entityManagerFactory;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate escritura;
+    private TransactionTemplate lectura;
+
+    @BeforeEach
+    void preparar() {
+        primaria = crear("primaria");
+        replica = crear("replica");
+        DataSource enrutado = ReplicaLecturaConfig.enrutarLecturas(primaria, replica);
+        entityManagerFactory = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactory.setDataSource(enrutado);
+        entityManagerFactory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        entityManagerFactory.setPackagesToScan(ReplicaLecturaConfigTest.class.getPackageName());
+        entityManagerFactory.afterPropertiesSet();
+        JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory.getObject());
+        jdbc = new JdbcTemplate(enrutado);
+        escritura = new TransactionTemplate(transactionManager);
+        lectura = new TransactionTemplate(transactionManager);
+        lectura.setReadOnly(true);
+    }
+
+    @AfterEach
+    void cerrar() {
+        entityManagerFactory.destroy();
+        primaria.shutdown();
+        replica.shutdown();
+    }
+
+    @Test
+    void transaccionDeSoloLecturaVaALaReplica() {
+        assertEquals("replica", lectura.execute(estado -> jdbc.queryForObject(CONSULTA, String.class)));
+    }
+
+    @Test
+    void escriturasYConsultasSinTransaccionVanALaPrimaria() {
+        assertEquals("primaria", escritura.execute(estado -> jdbc.queryForObject(CONSULTA, String.class)));
+        assertEquals("primaria", jdbc.queryForObject(CONSULTA, String.class));
+
+        escritura.executeWithoutResult(estado -> jdbc.update("UPDATE origen SET nombre = 'primaria-escrita'"));
+        assertEquals("primaria-escrita", new JdbcTemplate(primaria).queryForObject(CONSULTA, String.class));
+        assertEquals("replica", new JdbcTemplate(replica).queryForObject(CONSULTA, String.class));
+    }
+
+    private static EmbeddedDatabase crear(String nombre) {
+        EmbeddedDatabase base = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .setName(nombre)
+                .build();
+        JdbcTemplate jdbc = new JdbcTemplate(base);
+        jdbc.execute("CREATE TABLE origen (nombre VARCHAR(32))");
+        jdbc.update("INSERT INTO origen (nombre) VALUES (?)", nombre);
+        return base;
+    }
+}
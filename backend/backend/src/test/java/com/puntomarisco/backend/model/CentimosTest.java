@@ -0,0 +1,102 @@
+package com.puntomarisco.backend.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Suma de importes: un millón de líneas de pedido sumadas como antes (Double con unboxing
+ * en el bucle) y en céntimos enteros. Los céntimos deben dar el total exacto; el Double no.
+ */
+class CentimosTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CentimosTest.class);
+
+    private static final int LINEAS = 1_000_000;
+    private static final int RONDAS = 10;
+
+    // Línea tal como era la entidad antes: importes en Double
+    private static final class LineaDouble {
+        final Double precio;
+        final Integer cantidad;
+
+        LineaDouble(Double precio, Integer cantidad) {
+            this.precio = precio;
+            this.cantidad = cantidad;
+        }
+    }
+
+    private final List<DetallePedido> detalles = new ArrayList<>(LINEAS);
+    private final List<LineaDouble> lineasDouble = new ArrayList<>(LINEAS);
+    private BigDecimal esperado = BigDecimal.ZERO;
+
+    CentimosTest() {
+        Random random = new Random(42);
+        for (int i = 0; i < LINEAS; i++) {
+            // Precios de carta entre S/ 0.10 y S/ 99.90
+            double precio = (10 + random.nextInt(9981)) / 100.0;
+            int cantidad = 1 + random.nextInt(4);
+            DetallePedido detalle = new DetallePedido();
+            detalle.setPrecio(precio);
+            detalle.setCantidad(cantidad);
+            detalles.add(detalle);
+            lineasDouble.add(new LineaDouble(precio, cantidad));
+            esperado = esperado.add(BigDecimal.valueOf(precio).multiply(BigDecimal.valueOf(cantidad)));
+        }
+    }
+
+    @Test
+    void sumaExactaEnCentimos() {
+        assertEquals(0, esperado.compareTo(Centimos.aDecimal(sumarCentimos())));
+        assertNotEquals(0, esperado.compareTo(BigDecimal.valueOf(sumarDouble())));
+    }
+
+    // Medición de referencia: el mejor tiempo de cada bucle queda en el log, sin compararlos,
+    // porque depende de la máquina y de la carga del momento
+    @Test
+    @Tag("benchmark")
+    void sumaEnCentimosFrenteADouble() {
+        long mejorCentimosNs = Long.MAX_VALUE;
+        long mejorDoubleNs = Long.MAX_VALUE;
+        for (int ronda = 0; ronda < RONDAS; ronda++) {
+            long inicio = System.nanoTime();
+            long centimos = sumarCentimos();
+            mejorCentimosNs = Math.min(mejorCentimosNs, System.nanoTime() - inicio);
+            assertEquals(0, esperado.compareTo(Centimos.aDecimal(centimos)));
+
+            inicio = System.nanoTime();
+            sumarDouble();
+            mejorDoubleNs = Math.min(mejorDoubleNs, System.nanoTime() - inicio);
+        }
+
+        logger.info("Suma de {} líneas: céntimos {} µs, Double {} µs",
+                LINEAS, mejorCentimosNs / 1000, mejorDoubleNs / 1000);
+    }
+
+    private long sumarCentimos() {
+        long centimos = 0;
+        for (DetallePedido detalle : detalles) {
+            centimos += detalle.subtotalCentimos();
+        }
+        return centimos;
+    }
+
+    private double sumarDouble() {
+        double soles = 0.0;
+        for (LineaDouble linea : lineasDouble) {
+            if (linea.precio != null && linea.cantidad != null) {
+                soles += linea.precio * linea.cantidad;
+            }
+        }
+        return soles;
+    }
+}
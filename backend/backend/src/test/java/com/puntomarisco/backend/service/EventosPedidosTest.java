@@ -0,0 +1,170 @@
+package com.puntomarisco.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.puntomarisco.backend.model.DetallePedido;
+import com.puntomarisco.backend.model.Pedido;
+
+/**
+ * Reconstrucción del estado tras una caída: se escriben eventos de miles de pedidos en segmentos
+ * pequeños, se detiene el journal sin snapshot final y otra instancia rehace los pedidos activos
+ * solo con el snapshot inicial y la cola del journal.
+ */
+class EventosPedidosTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventosPedidosTest.class);
+
+    private static final int PEDIDOS = 5_000;
+
+    @TempDir
+    Path carpeta;
+
+    private Map<Long, Pedido.EstadoPedido> esperado;
+
+    @Test
+    void reconstruyeActivosDesdeSnapshotYCola() throws Exception {
+        long eventos = escribirYCaer();
+        // La cola ocupa varios segmentos: la reconstrucción tiene que cruzarlos
+        assertTrue(segmentos() > 1);
+
+        EventosPedidos reiniciado = nuevo();
+        assertEquals(esperado, estados(reiniciado.obtenerActivos()));
+        Pedido primero = reiniciado.obtenerActivos().get(0);
+        assertEquals(2, primero.getDetalles().size());
+        assertEquals(1250L, primero.getTotalCentimos());
+        // Campos que la API solo publica y el journal debe conservar
+        assertEquals(Long.valueOf(7), primero.getMesaId());
+        assertEquals(3L, primero.getVersion());
+        assertEquals("clave-" + primero.getId(), primero.getClaveLocal());
+        assertEquals(Long.valueOf(11), primero.getDetalles().get(0).getPlatoId());
+
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        assertEquals(eventos, reiniciado.exportar(salida, 1));
+        assertTrue(salida.toString().startsWith("{\"secuencia\":1,\"tipo\":\"CREADO\""));
+        reiniciado.detener();
+    }
+
+    // Tiempo de arranque tras la caída, solo informativo: depende del disco de la máquina
+    @Test
+    @Tag("benchmark")
+    void tiempoDeReconstruccionTrasCaida() throws Exception {
+        long eventos = escribirYCaer();
+
+        long inicio = System.nanoTime();
+        EventosPedidos reiniciado = nuevo();
+        long reconstruccionMs = (System.nanoTime() - inicio) / 1_000_000;
+
+        assertEquals(esperado, estados(reiniciado.obtenerActivos()));
+        logger.info("Reconstrucción de {} pedidos activos ({} eventos, {} segmentos) en {} ms",
+                esperado.size(), eventos, segmentos(), reconstruccionMs);
+        reiniciado.detener();
+    }
+
+    // Escribe los eventos, guarda los estados esperados y detiene el journal sin snapshot final
+    private long escribirYCaer() throws Exception {
+        // Snapshot vacío: evita la carga inicial desde la base de datos
+        Files.writeString(carpeta.resolve("snapshot.json"),
+                "{\"secuencia\":0,\"segmento\":1,\"posicion\":0,\"pedidos\":[]}");
+
+        EventosPedidos journal = nuevo();
+        long eventos = 0;
+        for (long id = 1; id <= PEDIDOS; id++) {
+            Pedido pedido = pedido(id);
+            journal.creado(pedido);
+            eventos++;
+            if (id % 3 == 0) {
+                journal.facturado(pedido);
+                eventos++;
+            } else if (id % 3 == 1) {
+                pedido.setEstado(Pedido.EstadoPedido.LISTO);
+                journal.estadoCambiado(pedido);
+                eventos++;
+            }
+        }
+        esperado = estados(esperarEscritor(journal).obtenerActivos());
+        assertEquals(PEDIDOS - PEDIDOS / 3, esperado.size());
+
+        // Caída: sin snapshot final ni cierre ordenado
+        ((ScheduledExecutorService) ReflectionTestUtils.getField(journal, "tareas")).shutdownNow();
+        return eventos;
+    }
+
+    private long segmentos() throws Exception {
+        try (Stream<Path> archivos = Files.list(carpeta)) {
+            return archivos.filter(p -> p.toString().endsWith(".log")).count();
+        }
+    }
+
+    private EventosPedidos nuevo() throws Exception {
+        EventosPedidos journal = new EventosPedidos();
+        ReflectionTestUtils.setField(journal, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(journal, "habilitado", true);
+        ReflectionTestUtils.setField(journal, "directorio", carpeta.toString());
+        ReflectionTestUtils.setField(journal, "segmentoMb", 1);
+        ReflectionTestUtils.setField(journal, "intervaloSnapshotMs", 3_600_000L);
+        ReflectionTestUtils.setField(journal, "intervaloSincronizarMs", 3_600_000L);
+        journal.iniciar();
+        return journal;
+    }
+
+    // Espera a que el hilo escritor haya aplicado todos los eventos encolados
+    private static EventosPedidos esperarEscritor(EventosPedidos journal) throws InterruptedException {
+        ExecutorService escritor = (ExecutorService) ReflectionTestUtils.getField(journal, "escritor");
+        escritor.shutdown();
+        assertTrue(escritor.awaitTermination(30, TimeUnit.SECONDS));
+        return journal;
+    }
+
+    private static Pedido pedido(long id) {
+        Pedido pedido = new Pedido();
+        pedido.setId(id);
+        pedido.setMesa("Mesa " + (id % 20));
+        pedido.setMesaId(7L);
+        pedido.setVersion(3L);
+        pedido.setClaveLocal("clave-" + id);
+        pedido.setHora(LocalDateTime.of(2025, 1, 1, 12, 0).plusSeconds(id));
+        pedido.setEstado(Pedido.EstadoPedido.EN_PROCESO);
+        List<DetallePedido> detalles = new ArrayList<>();
+        detalles.add(detalle("Ceviche", 1, 8.0, pedido));
+        detalles.get(0).setPlatoId(11L);
+        detalles.add(detalle("Chicha morada", 1, 4.5, pedido));
+        pedido.setDetalles(detalles);
+        pedido.setTotal(12.5);
+        return pedido;
+    }
+
+    private static DetallePedido detalle(String plato, int cantidad, double precio, Pedido pedido) {
+        DetallePedido detalle = new DetallePedido();
+        detalle.setPlato(plato);
+        detalle.setCantidad(cantidad);
+        detalle.setPrecio(precio);
+        detalle.setPedido(pedido);
+        return detalle;
+    }
+
+    private static Map<Long, Pedido.EstadoPedido> estados(List<Pedido> pedidos) {
+        return pedidos.stream().collect(Collectors.toMap(Pedido::getId, Pedido::getEstado));
+    }
+}
@@ -0,0 +1,121 @@
+package com.puntomarisco.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Histograma de latencias: límites entre buckets, percentiles de una distribución conocida
+ * y valores fuera de rango.
+ */
+class LatenciaHistogramaTest {
+
+    // Mayor valor que distingue el histograma: 2^41 - 1
+    private static final long VALOR_MAXIMO = (1L << 41) - 1;
+
+    @Test
+    void sinMuestrasDevuelveCero() {
+        LatenciaHistograma histograma = new LatenciaHistograma();
+
+        assertEquals(0, histograma.percentil(50));
+        assertEquals(0L, histograma.resumen().get("muestras"));
+        assertEquals(0L, histograma.resumen().get("promedio"));
+    }
+
+    @Test
+    void valoresLinealesSonExactos() {
+        LatenciaHistograma histograma = new LatenciaHistograma();
+        for (long v = 0; v < 64; v++) {
+            histograma.registrar(v);
+        }
+
+        assertEquals(0, histograma.percentil(0));
+        assertEquals(31, histograma.percentil(50));
+        assertEquals(63, histograma.percentil(100));
+    }
+
+    @Test
+    void limitesEntreBuckets() {
+        // 63 es el último bucket lineal y 64 el primero logarítmico
+        LatenciaHistograma histograma = new LatenciaHistograma();
+        histograma.registrar(63);
+        histograma.registrar(64);
+        assertEquals(63, histograma.percentil(50));
+        assertEquals(64, histograma.percentil(100));
+
+        // A partir de 64 los buckets miden 2: 64 y 65 comparten bucket, 66 ya no
+        LatenciaHistograma par = new LatenciaHistograma();
+        par.registrar(64);
+        par.registrar(65);
+        par.registrar(66);
+        assertEquals(65, par.percentil(50));
+        assertEquals(66, par.percentil(100));
+
+        // 127 cierra la primera potencia de dos y 128 abre la siguiente (buckets de 4)
+        LatenciaHistograma potencia = new LatenciaHistograma();
+        potencia.registrar(127);
+        potencia.registrar(200);
+        assertEquals(127, potencia.percentil(50));
+        assertEquals(200, potencia.percentil(100));
+    }
+
+    @Test
+    void percentilesDeDistribucionUniforme() {
+        LatenciaHistograma histograma = new LatenciaHistograma();
+        for (long v = 1; v <= 10_000; v++) {
+            histograma.registrar(v);
+        }
+
+        assertCerca(5_000, histograma.percentil(50));
+        assertCerca(9_500, histograma.percentil(95));
+        assertCerca(9_900, histograma.percentil(99));
+        assertEquals(10_000, histograma.percentil(100));
+
+        Map<String, Object> resumen = histograma.resumen();
+        assertEquals(10_000L, resumen.get("muestras"));
+        assertEquals(5_000L, resumen.get("promedio"));
+        assertEquals(10_000L, resumen.get("maximo"));
+    }
+
+    @Test
+    void percentilesConColaLarga() {
+        // 99% de peticiones rápidas (10 ms) y 1% lentas (2 s)
+        LatenciaHistograma histograma = new LatenciaHistograma();
+        for (int i = 0; i < 9_900; i++) {
+            histograma.registrar(10);
+        }
+        for (int i = 0; i < 100; i++) {
+            histograma.registrar(2_000);
+        }
+
+        assertEquals(10, histograma.percentil(50));
+        assertEquals(10, histograma.percentil(99));
+        assertCerca(2_000, histograma.percentil(99.5));
+    }
+
+    @Test
+    void valoresFueraDeRangoSeRecortan() {
+        LatenciaHistograma histograma = new LatenciaHistograma();
+        histograma.registrar(Long.MAX_VALUE);
+        histograma.registrar(VALOR_MAXIMO + 1);
+
+        // Los dos caen en el último bucket, que se reporta por su punto medio; el máximo es exacto
+        assertEquals(histograma.percentil(50), histograma.percentil(100));
+        assertCerca(VALOR_MAXIMO, histograma.percentil(100));
+        assertEquals(VALOR_MAXIMO, histograma.resumen().get("maximo"));
+
+        LatenciaHistograma negativos = new LatenciaHistograma();
+        negativos.registrar(-5);
+        assertEquals(0, negativos.percentil(100));
+        assertEquals(1L, negativos.getTotal());
+    }
+
+    // Error relativo de los buckets logarítmicos: menos de ~3%
+    private static void assertCerca(long esperado, long obtenido) {
+        assertTrue(Math.abs(obtenido - esperado) <= esperado * 0.03,
+                "esperado " + esperado + " ± 3%, obtenido " + obtenido);
+    }
+}
@@ -0,0 +1,78 @@
+package com.puntomarisco.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tormenta de reconexión: 100 pantallas piden el mismo listado mientras la consulta está en curso.
+ * Deben costar una sola consulta y recibir el mismo buffer; tras invalidar se vuelve a consultar.
+ */
+class LecturaCompartidaTest {
+
+    private static final int PETICIONES = 100;
+
+    @Test
+    void peticionesSimultaneasCompartenUnaConsulta() throws Exception {
+        AtomicInteger consultas = new AtomicInteger();
+        CountDownLatch liberar = new CountDownLatch(1);
+        LecturaCompartida lectura = new LecturaCompartida(() -> {
+            consultas.incrementAndGet();
+            try {
+                liberar.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new byte[] { 1, 2, 3 };
+        }, 0);
+
+        ExecutorService hilos = Executors.newFixedThreadPool(PETICIONES);
+        try {
+            CountDownLatch listos = new CountDownLatch(PETICIONES);
+            List<Future<byte[]>> respuestas = new ArrayList<>();
+            for (int i = 0; i < PETICIONES; i++) {
+                respuestas.add(hilos.submit(() -> {
+                    listos.countDown();
+                    return lectura.obtener();
+                }));
+            }
+            listos.await(5, TimeUnit.SECONDS);
+            Thread.sleep(100); // todas dentro de la consulta en curso
+            liberar.countDown();
+
+            byte[] primera = respuestas.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<byte[]> respuesta : respuestas) {
+                assertSame(primera, respuesta.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, consultas.get());
+        } finally {
+            hilos.shutdownNow();
+        }
+
+        // Sin vigencia, una petición posterior vuelve a consultar
+        lectura.obtener();
+        assertEquals(2, consultas.get());
+    }
+
+    @Test
+    void invalidarDescartaElResultadoVigente() {
+        AtomicInteger consultas = new AtomicInteger();
+        LecturaCompartida lectura = new LecturaCompartida(() -> new byte[] { (byte) consultas.incrementAndGet() }, 60_000);
+
+        assertEquals(1, lectura.obtener()[0]);
+        assertEquals(1, lectura.obtener()[0]);
+        lectura.invalidar();
+        assertEquals(2, lectura.obtener()[0]);
+        assertEquals(2, consultas.get());
+    }
+}
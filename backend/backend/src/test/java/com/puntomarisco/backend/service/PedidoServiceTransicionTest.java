@@ -0,0 +1,106 @@
+package com.puntomarisco.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.puntomarisco.backend.controller.SSEController;
+import com.puntomarisco.backend.model.Pedido;
+import com.puntomarisco.backend.repository.PedidoRepository;
+
+/**
+ * Cambio de estado de un pedido: el UPDATE condicional va primero y el estado actual
+ * solo se consulta cuando no se actualizó ninguna fila.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PedidoServiceTransicionTest {
+
+    private static final Long ID = 7L;
+
+    @Mock
+    private PedidoRepository pedidoRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private TiemposCocinaService tiemposCocinaService;
+
+    @Mock
+    private EventosPedidos eventosPedidos;
+
+    @Mock
+    private SSEController sseController;
+
+    @Spy
+    private BloqueoMesas bloqueoMesas = new BloqueoMesas(4, 1_000);
+
+    @InjectMocks
+    private PedidoService pedidoService;
+
+    @BeforeEach
+    void preparar() {
+        // La transacción se simula ejecutando la acción directamente
+        when(transactionTemplate.execute(any())).thenAnswer(
+                invocacion -> invocacion.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        pedidoService.iniciar();
+        when(pedidoRepository.findMesaById(ID)).thenReturn(Optional.of("3"));
+    }
+
+    @Test
+    void transicionPermitidaNoLeeElEstadoAntes() {
+        Pedido pedido = new Pedido();
+        pedido.setId(ID);
+        pedido.setEstado(Pedido.EstadoPedido.EN_PROCESO);
+        when(pedidoRepository.actualizarEstadoSi(eq(ID), eq(Pedido.EstadoPedido.EN_PROCESO), anyCollection())).thenReturn(1);
+        when(pedidoRepository.findConDetallesByIds(List.of(ID))).thenReturn(List.of(pedido));
+
+        assertSame(pedido, pedidoService.actualizarEstadoPedido(ID, "EN_PROCESO"));
+        verify(pedidoRepository, never()).findEstadoById(ID);
+        verify(pedidoRepository, never()).findById(ID);
+    }
+
+    @Test
+    void transicionAlMismoEstadoEsConflicto() {
+        when(pedidoRepository.actualizarEstadoSi(eq(ID), eq(Pedido.EstadoPedido.LISTO), anyCollection())).thenReturn(0);
+        when(pedidoRepository.findEstadoById(ID)).thenReturn(Optional.of(Pedido.EstadoPedido.LISTO));
+
+        TransicionEstadoException e = assertThrows(TransicionEstadoException.class,
+                () -> pedidoService.actualizarEstadoPedido(ID, "LISTO"));
+        assertEquals(Pedido.EstadoPedido.LISTO, e.getEstadoActual());
+        assertEquals(Pedido.EstadoPedido.LISTO, e.getEstadoSolicitado());
+        verify(pedidoRepository, never()).findConDetallesByIds(anyCollection());
+    }
+
+    @Test
+    void aPendienteNoSeIntentaElUpdate() {
+        when(pedidoRepository.findEstadoById(ID)).thenReturn(Optional.of(Pedido.EstadoPedido.LISTO));
+
+        TransicionEstadoException e = assertThrows(TransicionEstadoException.class,
+                () -> pedidoService.actualizarEstadoPedido(ID, "PENDIENTE"));
+        assertEquals(Pedido.EstadoPedido.LISTO, e.getEstadoActual());
+        verify(pedidoRepository, never()).actualizarEstadoSi(any(), any(), anyCollection());
+    }
+}
@@ -8,9 +8,9 @@ export const obtenerEstadoCaja = () => axios.get(`${API_URL}/estado`);
 // Verificar si la caja está abierta
 export const isCajaAbierta = () => axios.get(`${API_URL}/abierta`);
 
-// Cerrar caja
-export const cerrarCaja = (observaciones, totalVentas) => 
-  axios.post(`${API_URL}/cerrar`, { observaciones, totalVentas });
+// Cerrar caja (el total de ventas lo acumula el servidor al facturar)
+export const cerrarCaja = (observaciones) => 
+  axios.post(`${API_URL}/cerrar`, { observaciones });
 
 // Abrir caja
 export const abrirCaja = () => axios.post(`${API_URL}/abrir`);
@@ -53,9 +53,9 @@ export const cajaAPI = {
     }
   },
 
-  cerrarCaja: async (observaciones, totalVentas) => {
+  cerrarCaja: async (observaciones) => {
     try {
-      const response = await cerrarCaja(observaciones, totalVentas);
+      const response = await cerrarCaja(observaciones);
       return response.data;
     } catch (error) {
       console.error('Error al cerrar caja:', error);
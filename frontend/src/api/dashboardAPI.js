@@ -0,0 +1,19 @@
+import axios from "axios";
+
+const API_URL = "http://localhost:8080/api/dashboard";
+
+// Mesas con pedidos abiertos, cola de cocina, resumen del día y caja en una sola petición
+export const obtenerDashboard = () => axios.get(API_URL);
+
+// API object para compatibilidad
+export const dashboardAPI = {
+  obtenerDashboard: async () => {
+    try {
+      const response = await obtenerDashboard();
+      return response.data;
+    } catch (error) {
+      console.error('Error al obtener el dashboard:', error);
+      throw error;
+    }
+  },
+};
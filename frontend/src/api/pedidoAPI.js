@@ -2,8 +2,16 @@ import axios from "axios";
 
 const API_URL = "http://localhost:8080/api/pedidos";
 
+// Clave para la cabecera Idempotency-Key: un reintento con la misma clave no repite la operación
+export const nuevaClaveIdempotencia = () =>
+  window.crypto && window.crypto.randomUUID
+    ? window.crypto.randomUUID()
+    : `${Date.now()}-${Math.random().toString(36).slice(2)}`;
+
+const conClave = (clave) => (clave ? { headers: { "Idempotency-Key": clave } } : undefined);
+
 // Crear pedido
-export const crearPedido = (pedido) => axios.post(API_URL, pedido);
+export const crearPedido = (pedido, clave) => axios.post(API_URL, pedido, conClave(clave));
 
 // Obtener todos los pedidos
 export const obtenerPedidos = () => axios.get(API_URL);
@@ -17,8 +25,8 @@ export const obtenerPedidosPorMesa = (mesa) => axios.get(`${API_URL}/mesa/${mesa
 // Actualizar pedido
 export const actualizarPedido = (id, pedido) => axios.put(`${API_URL}/${id}`, pedido);
 
-// Facturar pedido
-export const facturarPedido = (id) => axios.put(`${API_URL}/${id}/facturar`);
+// Facturar pedido (un pedido se factura una sola vez: la clave es fija)
+export const facturarPedido = (id) => axios.put(`${API_URL}/${id}/facturar`, null, conClave(`facturar-${id}`));
 
 // Actualizar estado del pedido
 export const actualizarEstadoPedido = (id, estado) => 
@@ -35,9 +43,9 @@ export const obtenerPedidosDelDia = () => axios.get(`${API_URL}/del-dia`);
 
 // API object para compatibilidad
 export const pedidoAPI = {
-  crearPedido: async (pedido) => {
+  crearPedido: async (pedido, clave) => {
     try {
-      const response = await crearPedido(pedido);
+      const response = await crearPedido(pedido, clave);
       return response.data;
     } catch (error) {
       console.error('Error al crear pedido:', error);
@@ -144,6 +144,29 @@ class SSEService {
           }
         });
 
+        // Listener para cambios de estado en lote: un evento con varios pedidos
+        this.eventSource.addEventListener('pedidos-actualizados', (event) => {
+          try {
+            const pedidos = JSON.parse(event.data);
+            pedidos.forEach(pedido => this.notifyMessage(pedido));
+          } catch (parseError) {
+            console.error('Error al parsear pedidos SSE:', parseError);
+            this.notifyError(parseError);
+          }
+        });
+
+        // Listener para operaciones de mesas (transferir, unir, dividir)
+        this.eventSource.addEventListener('mesa-actualizada', (event) => {
+          try {
+            const mesa = JSON.parse(event.data);
+            mesa.pedidos.forEach(pedido => this.notifyMessage(pedido));
+            (mesa.eliminados || []).forEach(id => this.notifyMessage({ id, eliminado: true }));
+          } catch (parseError) {
+            console.error('Error al parsear mesa SSE:', parseError);
+            this.notifyError(parseError);
+          }
+        });
+
         this.eventSource.onerror = (event) => {
           console.error('❌ Error en conexión SSE:', event);
           this.connected = false;
@@ -1,11 +1,11 @@
 import React, { useState, useEffect } from "react";
 import { cajaAPI } from "../../api/cajaAPI";
-import { pedidoAPI } from "../../api/pedidoAPI";
+import { dashboardAPI } from "../../api/dashboardAPI";
 import BackButton from "../UI/BackButton";
 
 export default function CierreCaja() {
   const [estadoCaja, setEstadoCaja] = useState(null);
-  const [pedidosHoy, setPedidosHoy] = useState([]);
+  const [resumenDia, setResumenDia] = useState({ pedidos: 0, facturados: 0, pendientes: 0 });
   const [totalVentas, setTotalVentas] = useState(0);
   const [observaciones, setObservaciones] = useState("");
   const [loading, setLoading] = useState(false);
@@ -19,19 +19,11 @@ export default function CierreCaja() {
     try {
       setCargando(true);
       
-      // Cargar estado de caja
-      const caja = await cajaAPI.obtenerEstadoCaja();
-      setEstadoCaja(caja);
-      
-      // Cargar pedidos del día
-      const pedidos = await pedidoAPI.obtenerPedidosDelDia();
-      setPedidosHoy(pedidos);
-      
-      // Calcular total de ventas
-      const total = pedidos
-        .filter(pedido => pedido.facturado)
-        .reduce((sum, pedido) => sum + (pedido.total || 0), 0);
-      setTotalVentas(total);
+      // Estado de caja y resumen de pedidos del día en una sola petición
+      const dashboard = await dashboardAPI.obtenerDashboard();
+      setEstadoCaja(dashboard.caja);
+      setResumenDia(dashboard.dia);
+      setTotalVentas(dashboard.caja?.totalVentas || 0);
       
     } catch (error) {
       console.error("Error al cargar datos:", error);
@@ -48,7 +40,7 @@ export default function CierreCaja() {
 
     setLoading(true);
     try {
-      await cajaAPI.cerrarCaja(observaciones, totalVentas);
+      await cajaAPI.cerrarCaja(observaciones);
       alert("Caja cerrada exitosamente");
       await cargarDatos(); // Recargar datos
     } catch (error) {
@@ -138,18 +130,18 @@ export default function CierreCaja() {
           <div className="space-y-2">
             <div className="flex justify-between">
               <span>Pedidos Totales:</span>
-              <span className="font-semibold">{pedidosHoy.length}</span>
+              <span className="font-semibold">{resumenDia.pedidos}</span>
             </div>
             <div className="flex justify-between">
               <span>Pedidos Facturados:</span>
               <span className="font-semibold text-green-400">
-                {pedidosHoy.filter(p => p.facturado).length}
+                {resumenDia.facturados}
               </span>
             </div>
             <div className="flex justify-between">
               <span>Pedidos Pendientes:</span>
               <span className="font-semibold text-yellow-400">
-                {pedidosHoy.filter(p => !p.facturado).length}
+                {resumenDia.pendientes}
               </span>
             </div>
             <div className="border-t border-gray-600 pt-2 mt-3">
@@ -13,6 +13,11 @@ export default function PantallaCocina() {
   const handleNewPedido = useCallback((nuevoPedido) => {
     console.log("Pedido recibido via SSE:", nuevoPedido);
     setPedidos((prev) => {
+      // Pedido consolidado en otro al unir mesas
+      if (nuevoPedido.eliminado) {
+        return prev.filter(p => p.id !== nuevoPedido.id);
+      }
+
       // Buscar si el pedido ya existe
       const existingIndex = prev.findIndex(p => p.id === nuevoPedido.id);
       
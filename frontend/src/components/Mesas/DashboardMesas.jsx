@@ -2,11 +2,11 @@ import React, { useState, useEffect } from "react";
 import { useNavigate } from "react-router-dom";
 import axios from "axios";
 import BackButton from "../UI/BackButton";
-import { pedidoAPI } from "../../api/pedidoAPI";
+import { dashboardAPI } from "../../api/dashboardAPI";
 
 export default function DashboardMesas() {
   const [mesas, setMesas] = useState([]);
-  const [pedidosPorMesa, setPedidosPorMesa] = useState({});
+  const [resumenPorMesa, setResumenPorMesa] = useState({});
   const [nuevoNombre, setNuevoNombre] = useState("");
   const [editarId, setEditarId] = useState(null);
   const [editarNombre, setEditarNombre] = useState("");
@@ -16,21 +16,15 @@ export default function DashboardMesas() {
 
   const cargarMesas = async () => {
     try {
-      const res = await axios.get("http://localhost:8080/api/mesas");
-      setMesas(res.data);
+      // Mesas y sus pedidos abiertos en una sola petición
+      const dashboard = await dashboardAPI.obtenerDashboard();
+      setMesas(dashboard.mesas.filter(m => m.id !== null));
       
-      // Cargar pedidos activos para cada mesa
-      const pedidosMap = {};
-      for (const mesa of res.data) {
-        try {
-          const pedidos = await pedidoAPI.obtenerPedidosPorMesa(mesa.nombre);
-          pedidosMap[mesa.nombre] = pedidos.filter(p => !p.facturado);
-        } catch (error) {
-          console.error(`Error al cargar pedidos de mesa ${mesa.nombre}:`, error);
-          pedidosMap[mesa.nombre] = [];
-        }
+      const resumenMap = {};
+      for (const mesa of dashboard.mesas) {
+        resumenMap[mesa.nombre] = mesa;
       }
-      setPedidosPorMesa(pedidosMap);
+      setResumenPorMesa(resumenMap);
     } catch (error) {
       console.error('Error al cargar mesas:', error);
     } finally {
@@ -74,19 +68,18 @@ export default function DashboardMesas() {
   };
 
   const getEstadoMesa = (mesa) => {
-    const pedidosActivos = pedidosPorMesa[mesa.nombre] || [];
-    if (pedidosActivos.length > 0) {
+    const pedidosAbiertos = resumenPorMesa[mesa.nombre]?.pedidosAbiertos || 0;
+    if (pedidosAbiertos > 0) {
       return { estado: 'OCUPADA', color: 'text-red-400', bg: 'bg-red-900' };
     }
     return { estado: 'LIBRE', color: 'text-green-400', bg: 'bg-green-900' };
   };
 
   const handleClickMesa = (mesa) => {
-    const pedidosActivos = pedidosPorMesa[mesa.nombre] || [];
-    if (pedidosActivos.length > 0) {
+    const resumen = resumenPorMesa[mesa.nombre];
+    if (resumen && resumen.pedidosAbiertos > 0) {
       // Si hay pedidos activos, ir al resumen del último pedido
-      const ultimoPedido = pedidosActivos[pedidosActivos.length - 1];
-      navigate(`/resumen/${ultimoPedido.id}`);
+      navigate(`/resumen/${resumen.ultimoPedidoId}`);
     } else {
       // Si no hay pedidos, crear nuevo pedido
       navigate(`/pedido/${mesa.nombre}`);
@@ -126,7 +119,7 @@ export default function DashboardMesas() {
         <div className="grid grid-cols-2 gap-3 mb-6 max-h-[calc(100vh-280px)] overflow-y-auto pb-4">
           {mesas.map((mesa) => {
             const estadoInfo = getEstadoMesa(mesa);
-            const pedidosActivos = pedidosPorMesa[mesa.nombre] || [];
+            const pedidosAbiertos = resumenPorMesa[mesa.nombre]?.pedidosAbiertos || 0;
             
             return (
               <div key={mesa.id} className="w-full">
@@ -168,10 +161,10 @@ export default function DashboardMesas() {
                       </div>
                       
                       {/* Información de pedidos activos */}
-                      {pedidosActivos.length > 0 && (
+                      {pedidosAbiertos > 0 && (
                         <div className="absolute bottom-2 right-3 text-xs">
                           <span className="text-orange-400">
-                            {pedidosActivos.length} pedido{pedidosActivos.length > 1 ? 's' : ''}
+                            {pedidosAbiertos} pedido{pedidosAbiertos > 1 ? 's' : ''}
                           </span>
                         </div>
                       )}
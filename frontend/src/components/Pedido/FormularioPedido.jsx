@@ -1,6 +1,6 @@
-import React, { useState, useEffect } from "react";
+import React, { useState, useEffect, useRef } from "react";
 import platosPredefinidos from "../../data/platos.json";
-import { crearPedido } from "../../api/pedidoAPI";
+import { crearPedido, nuevaClaveIdempotencia } from "../../api/pedidoAPI";
 import { useParams, useNavigate, useSearchParams } from "react-router-dom";
 import BackButton from "../UI/BackButton";
 import { pedidoAPI } from "../../api/pedidoAPI";
@@ -17,6 +17,8 @@ export default function FormularioPedido() {
   const [loading, setLoading] = useState(false);
   const [isEditing, setIsEditing] = useState(false);
   const [pedidoOriginal, setPedidoOriginal] = useState(null);
+  // Misma clave en todos los reintentos de este pedido, para no crearlo dos veces
+  const claveCreacion = useRef(nuevaClaveIdempotencia());
 
   // Crear mapa de precios desde el JSON
   const preciosPlatos = {};
@@ -150,12 +152,18 @@ export default function FormularioPedido() {
         };
 
         console.log("Enviando nuevo pedido:", pedido);
-        const response = await crearPedido(pedido);
+        const response = await crearPedido(pedido, claveCreacion.current);
         const resultado = response.data; // Extraer data de la respuesta de axios
         console.log("Pedido creado exitosamente:", resultado);
-        
-        // Verificar que el resultado tenga ID antes de navegar
-        if (resultado && resultado.id) {
+
+        // 202: el pedido quedó en el journal local del servidor y aún no tiene ID;
+        // solo se avisa de la caída si el servidor indica que la base de datos no responde
+        if (response.status === 202) {
+          if (resultado?.sinConexion) {
+            alert("Sin conexión con la base de datos: el pedido quedó guardado y se enviará a cocina al reconectar.");
+          }
+          navigate('/mesas');
+        } else if (resultado && resultado.id) {
           navigate(`/resumen/${resultado.id}`);
         } else {
           console.error("Error: No se recibió ID del pedido creado", resultado);